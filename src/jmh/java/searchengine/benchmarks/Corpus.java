@@ -0,0 +1,64 @@
+package searchengine.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сохранённые страницы из src/jmh/resources/corpus: бенчмарки работают без сети и на одних и тех же
+ * данных в каждом запуске. Список страниц - corpus/index.txt (ресурсы в jar нельзя перечислить).
+ *
+ * Запуск: mvn -P jmh package && java -jar target/benchmarks.jar -rf json -rff target/jmh-result.json
+ * Результаты разных коммитов сравнимы при одинаковых JVM и машине: параметры форков, прогрева
+ * и размер кучи заданы в аннотациях бенчмарков, синтетические данные строятся с фиксированным seed.
+ */
+public final class Corpus {
+
+    public static final long SEED = 20_240_901L;
+    public static final int PAGES = 6;  // Для @OperationsPerInvocation; при изменении корпуса меняется вместе с index.txt
+
+    private Corpus() {
+    }
+
+    // baseUri - адрес, с которого сохранена страница, siteUrl - адрес сайта из конфигурации
+    public record CorpusPage(String name, String baseUri, String siteUrl, String html) {
+    }
+
+    public static List<CorpusPage> load() {
+        List<CorpusPage> pages = new ArrayList<>();
+        for (String line : read("corpus/index.txt").split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            pages.add(new CorpusPage(parts[0], parts[1], parts[2], read("corpus/" + parts[0])));
+        }
+        if (pages.size() != PAGES) {
+            throw new IllegalStateException("В корпусе " + pages.size() + " страниц, ожидалось " + PAGES);
+        }
+        return pages;
+    }
+
+    private static String read(String resource) {
+        try (InputStream in = Corpus.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Нет ресурса " + resource);
+            }
+            StringBuilder text = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                char[] buffer = new char[8192];
+                for (int n; (n = reader.read(buffer)) > 0; ) {
+                    text.append(buffer, 0, n);
+                }
+            }
+            return text.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package searchengine.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.benchmarks.Corpus.CorpusPage;
+import searchengine.services.crawler.HtmlExtractor;
+import searchengine.services.crawler.HtmlExtractor.MediaLink;
+import searchengine.services.crawler.UrlNormalizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор загруженной страницы до всего, что нужно обходу: HTML для хранения, заголовок, текст, ссылки
+ * и медиафайлы. jsoup - прежний путь через полный Document и doc.html(), streaming - HtmlExtractor.
+ * Операция - одна страница корпуса. Выделение памяти на операцию (gc.alloc.rate.norm) - с профилировщиком:
+ * java -jar target/benchmarks.jar HtmlExtractionBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class HtmlExtractionBenchmark {
+
+    private List<CorpusPage> pages;
+    private byte[][] bodies;
+
+    @Setup
+    public void setUp() {
+        pages = Corpus.load();
+        bodies = pages.stream().map(page -> page.html().getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.PAGES)
+    public void jsoup(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < bodies.length; i++) {
+            CorpusPage page = pages.get(i);
+            Document doc = Jsoup.parse(new ByteArrayInputStream(bodies[i]), null, page.baseUri());
+            blackhole.consume(doc.html());
+            blackhole.consume(doc.title());
+            blackhole.consume(doc.body() != null ? doc.body().text() : doc.text());
+            blackhole.consume(pageLinks(doc, page.siteUrl()));
+            blackhole.consume(mediaLinks(doc));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.PAGES)
+    public void streaming(Blackhole blackhole) {
+        for (int i = 0; i < bodies.length; i++) {
+            CorpusPage page = pages.get(i);
+            blackhole.consume(HtmlExtractor.extract(bodies[i], null, page.baseUri(), page.siteUrl(), Integer.MAX_VALUE));
+        }
+    }
+
+    // Извлечение ссылок из Document в том виде, в каком его делал обход до HtmlExtractor
+    private static List<String> pageLinks(Document doc, String siteUrl) {
+        List<String> links = new ArrayList<>();
+        for (Element link : doc.select("a[href]")) {
+            String nextUrl = link.absUrl("href");
+            if (!nextUrl.isEmpty() && nextUrl.startsWith(siteUrl)) {
+                links.add(nextUrl);
+            }
+        }
+        return links;
+    }
+
+    private static List<MediaLink> mediaLinks(Document doc) {
+        List<MediaLink> media = new ArrayList<>();
+        addMedia(media, doc, "img[src]", "src", "image");
+        addMedia(media, doc, "link[href][rel~=(?i)(^|\\s)stylesheet(\\s|$)]", "href", "css");
+        addMedia(media, doc, "link[href][rel~=(?i)(^|\\s)(icon|apple-touch-icon)(\\s|$)]:not([rel~=(?i)(^|\\s)stylesheet(\\s|$)])", "href", "image");
+        addMedia(media, doc, "script[src]", "src", "js");
+        return media;
+    }
+
+    private static void addMedia(List<MediaLink> media, Document doc, String selector, String attribute, String type) {
+        for (Element element : doc.select(selector)) {
+            String url = UrlNormalizer.normalize(element.absUrl(attribute));
+            if (url != null) {
+                media.add(new MediaLink(url, type));
+            }
+        }
+    }
+}
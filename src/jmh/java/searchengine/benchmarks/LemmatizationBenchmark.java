@@ -0,0 +1,66 @@
+package searchengine.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.benchmarks.Corpus.CorpusPage;
+import searchengine.services.LemmaService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация текста корпуса кусками по 1 КБ: операция - один кусок, так что ops/s читается как КБ/с.
+ * Кэш лемм LemmaService после прогрева содержит все слова корпуса - это установившийся режим обхода,
+ * где словарь сайта быстро повторяется.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class LemmatizationBenchmark {
+
+    static final int CHUNK = 1024;
+    static final int CHUNKS = 64;
+
+    private LemmaService lemmaService;
+    private String[] chunks;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaService = new LemmaService();
+        StringBuilder text = new StringBuilder();
+        for (CorpusPage page : Corpus.load()) {
+            text.append(Jsoup.parse(page.html()).text()).append(' ');
+        }
+        List<String> parts = new ArrayList<>();
+        for (int from = 0; parts.size() < CHUNKS; from += CHUNK) {
+            if (from + CHUNK > text.length()) {
+                from = 0;  // Корпус меньше 64 КБ: куски идут по кругу
+            }
+            parts.add(text.substring(from, from + CHUNK));
+        }
+        chunks = parts.toArray(String[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void collectLemmas(Blackhole blackhole) {
+        for (String chunk : chunks) {
+            blackhole.consume(lemmaService.collectLemmas(chunk));
+        }
+    }
+
+    // Вариант индексации: с позициями вхождений для сниппетов
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void collectOccurrences(Blackhole blackhole) {
+        for (String chunk : chunks) {
+            blackhole.consume(lemmaService.collectOccurrences("", chunk));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.benchmarks.Corpus.CorpusPage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.IndexBatchRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вставка страниц в таблицу page, операция - одна страница, результат - вставок в секунду.
+ * rowByRow - прежняя запись: отдельный INSERT в своей транзакции на каждую страницу (save() с IDENTITY),
+ * batched - PageBatchWriter: пакет IndexBatchRepository.insertPages в одной транзакции.
+ * По умолчанию база - H2 в памяти в режиме MySQL: она не платит ни за обмен с сервером, ни за фиксацию
+ * транзакции на диске и показывает только накладные расходы JDBC. Настоящие числа даёт пустая схема MySQL:
+ * java -Djdbc.url="jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true" -Djdbc.user=root -Djdbc.password=...
+ *      -jar target/benchmarks.jar PageWriteBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class PageWriteBenchmark {
+
+    private static final int PAGES = 100;  // Размер пакета по умолчанию (crawler.write-batch-size)
+    private static final String INSERT = "INSERT INTO page (site_id, generation, path, code, content, content_compressed, " +
+            "title, body_text, content_hash, etag, last_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private IndexBatchRepository repository;
+    private List<Page> pages;
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                System.getProperty("jdbc.url", "jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"),
+                System.getProperty("jdbc.user", "sa"), System.getProperty("jdbc.password", ""), true);
+        dataSource.setAutoCommit(true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS page");
+        jdbcTemplate.execute("CREATE TABLE page (id INT NOT NULL AUTO_INCREMENT PRIMARY KEY, site_id INT NOT NULL, " +
+                "generation INT NOT NULL DEFAULT 0, path VARCHAR(255) NOT NULL, code INT NOT NULL, content MEDIUMTEXT NOT NULL, " +
+                "content_compressed MEDIUMBLOB, title VARCHAR(512), body_text MEDIUMTEXT, content_hash VARCHAR(64), " +
+                "etag VARCHAR(255), last_modified VARCHAR(64))");
+
+        Site site = new Site();
+        site.setId(1);
+        List<CorpusPage> corpus = Corpus.load();
+        pages = new ArrayList<>(PAGES);
+        for (int i = 0; i < PAGES; i++) {
+            CorpusPage source = corpus.get(i % corpus.size());
+            Page page = new Page(site, "/" + source.name() + "?p=" + i, 200, source.html());
+            page.setTitle(source.name());
+            page.setText(source.html().length() > 4096 ? source.html().substring(0, 4096) : source.html());
+            page.setContentHash(Integer.toHexString(source.html().hashCode()));
+            pages.add(page);
+        }
+    }
+
+    // Таблица не растёт от итерации к итерации: иначе поздние итерации мерили бы уже другой индекс
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE page");
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS page");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public void rowByRow() {
+        for (Page page : pages) {
+            jdbcTemplate.update(INSERT, page.getSite().getId(), page.getGeneration(), page.getPath(), page.getCode(),
+                    page.getContent(), page.getCompressedContent(), page.getTitle(), page.getText(),
+                    page.getContentHash(), page.getEtag(), page.getLastModified());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public void batched() {
+        transactionTemplate.executeWithoutResult(status -> repository.insertPages(pages));
+    }
+}
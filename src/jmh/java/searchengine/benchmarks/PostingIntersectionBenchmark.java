@@ -0,0 +1,56 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.Postings;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересечение posting list'ов двух лемм запроса. Редкая лемма сочетается с частой: так выглядит
+ * запрос после сортировки лемм по частоте. id страниц случайные из диапазона, в 4 раза большего
+ * частого списка.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class PostingIntersectionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int frequentSize;
+
+    @Param({"100", "10000"})
+    private int rareSize;
+
+    private Postings frequent;
+    private Postings rare;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Corpus.SEED);
+        int range = frequentSize * 4;
+        frequent = postings(random, frequentSize, range);
+        rare = postings(random, Math.min(rareSize, frequentSize), range);
+    }
+
+    @Benchmark
+    public Postings intersect() {
+        return rare.intersect(frequent);
+    }
+
+    // size различных id из [0, range) по возрастанию: выборочный проход по диапазону
+    private static Postings postings(Random random, int size, int range) {
+        Postings.Builder builder = new Postings.Builder(size);
+        int needed = size;
+        for (int id = 0; id < range && needed > 0; id++) {
+            if (random.nextInt(range - id) < needed) {
+                builder.add(id, 1 + random.nextFloat() * 10);
+                needed--;
+            }
+        }
+        return builder.build();
+    }
+}
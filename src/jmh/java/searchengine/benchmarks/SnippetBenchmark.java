@@ -0,0 +1,72 @@
+package searchengine.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import searchengine.benchmarks.Corpus.CorpusPage;
+import searchengine.services.LemmaOccurrences;
+import searchengine.services.LemmaService;
+import searchengine.services.SnippetBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сниппет одного результата поиска: по позициям, сохранённым в индексе, против прежнего пути -
+ * разбора HTML страницы и лемматизации всего её текста. Запрос - две самые частые леммы страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class SnippetBenchmark {
+
+    @Param({"science-article", "shop-product"})
+    private String page;
+
+    private SnippetBuilder snippetBuilder;
+    private String html;
+    private String text;
+    private Set<String> queryLemmas;
+    private List<byte[]> positions;
+
+    @Setup
+    public void setUp() throws IOException {
+        LemmaService lemmaService = new LemmaService();
+        snippetBuilder = new SnippetBuilder(lemmaService);
+        CorpusPage corpusPage = Corpus.load().stream()
+                .filter(candidate -> candidate.name().startsWith(page))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("В корпусе нет страницы " + page));
+        html = corpusPage.html();
+        text = Jsoup.parse(html).body().text();
+
+        Map<String, LemmaOccurrences> occurrences = lemmaService.collectOccurrences("", text);
+        queryLemmas = new LinkedHashSet<>();
+        occurrences.entrySet().stream()
+                .sorted((a, b) -> Integer.compare(b.getValue().getCount(), a.getValue().getCount()))
+                .limit(2)
+                .forEach(entry -> queryLemmas.add(entry.getKey()));
+        positions = new ArrayList<>();
+        for (String lemma : queryLemmas) {
+            positions.add(occurrences.get(lemma).encodePositions());
+        }
+    }
+
+    // Текст страницы уже извлечён при индексации, позиции лежат в индексе
+    @Benchmark
+    public String fromPositions() {
+        return snippetBuilder.buildFromPositions(text, positions);
+    }
+
+    @Benchmark
+    public String parseAndLemmatize() {
+        return snippetBuilder.build(Jsoup.parse(html).body().text(), queryLemmas);
+    }
+}
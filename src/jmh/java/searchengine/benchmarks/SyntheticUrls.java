@@ -0,0 +1,27 @@
+package searchengine.benchmarks;
+
+import java.util.Random;
+
+// Адреса, похожие на адреса каталога интернет-магазина, для нагрузок больше корпуса
+final class SyntheticUrls {
+
+    private static final String[] SECTIONS = {"catalog", "product", "news", "science/publications", "brand", "reviews"};
+
+    private SyntheticUrls() {
+    }
+
+    static String[] generate(int count, long seed) {
+        Random random = new Random(seed);
+        String[] urls = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder url = new StringBuilder(80).append("http://www.playback.ru/")
+                    .append(SECTIONS[random.nextInt(SECTIONS.length)]).append('/')
+                    .append(random.nextInt(1_000_000)).append(".html");
+            if (random.nextInt(4) == 0) {
+                url.append("?page=").append(random.nextInt(50)).append("&sort=price");
+            }
+            urls[i] = url.toString();
+        }
+        return urls;
+    }
+}
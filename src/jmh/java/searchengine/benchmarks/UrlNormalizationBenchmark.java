@@ -0,0 +1,101 @@
+package searchengine.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.benchmarks.Corpus.CorpusPage;
+import searchengine.services.crawler.UrlNormalizer;
+import searchengine.services.crawler.VisitedUrlSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нормализация и дедупликация ссылок корпуса. К ссылкам страниц добавлены варианты написания,
+ * которые встречаются на сайтах: фрагменты, завершающий «/», другой порядок параметров, utm-метки.
+ * Операция - одна ссылка.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class UrlNormalizationBenchmark {
+
+    static final int LINKS = 4096;
+
+    private String[] links;
+    private String[] normalized;
+
+    @Setup
+    public void setUp() {
+        List<String> found = new ArrayList<>();
+        for (CorpusPage page : Corpus.load()) {
+            Document doc = Jsoup.parse(page.html(), page.baseUri());
+            for (Element link : doc.select("a[href], link[href]")) {
+                found.add(link.absUrl("href"));
+            }
+            for (Element media : doc.select("img[src], script[src]")) {
+                found.add(media.absUrl("src"));
+            }
+        }
+        Random random = new Random(Corpus.SEED);
+        links = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            String link = found.get(random.nextInt(found.size()));
+            links[i] = switch (random.nextInt(5)) {
+                case 0 -> link + "#section-" + random.nextInt(10);
+                case 1 -> link.endsWith("/") || link.contains("?") ? link : link + "/";
+                case 2 -> link + (link.contains("?") ? "&" : "?") + "utm_source=newsletter&utm_medium=email";
+                case 3 -> link.contains("?") ? link : link + "?sort=price&page=" + random.nextInt(5);
+                default -> link;
+            };
+        }
+        normalized = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            normalized[i] = UrlNormalizer.key(UrlNormalizer.normalize(links[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public void normalize(Blackhole blackhole) {
+        for (String link : links) {
+            blackhole.consume(UrlNormalizer.normalize(link));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public int dedupVisitedUrlSet() {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        int unique = 0;
+        for (String url : normalized) {
+            if (url != null && visited.add(url)) {
+                unique++;
+            }
+        }
+        return unique;
+    }
+
+    // Прежний вариант: множество строк на ConcurrentHashMap
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public int dedupConcurrentSet() {
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+        int unique = 0;
+        for (String url : normalized) {
+            if (url != null && visited.add(url)) {
+                unique++;
+            }
+        }
+        return unique;
+    }
+}
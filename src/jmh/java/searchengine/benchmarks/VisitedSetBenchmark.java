@@ -0,0 +1,86 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.crawler.VisitedUrlSet;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * add/contains множества посещённых адресов на объёме большого сайта: VisitedUrlSet (64-битные хэши)
+ * против ConcurrentHashMap.newKeySet() строк. Операция - один адрес. Память на адрес измеряет
+ * VisitedSetFootprint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class VisitedSetBenchmark {
+
+    static final int URLS = 200_000;
+
+    private String[] urls;
+    private String[] missing;
+    private VisitedUrlSet filledHashes;
+    private Set<String> filledStrings;
+
+    @Setup
+    public void setUp() {
+        urls = SyntheticUrls.generate(URLS, Corpus.SEED);
+        missing = SyntheticUrls.generate(URLS, Corpus.SEED + 1);
+        filledHashes = new VisitedUrlSet();
+        filledStrings = ConcurrentHashMap.newKeySet();
+        for (String url : urls) {
+            filledHashes.add(url);
+            filledStrings.add(url);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public VisitedUrlSet addVisitedUrlSet() {
+        VisitedUrlSet set = new VisitedUrlSet();
+        for (String url : urls) {
+            set.add(url);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public Set<String> addConcurrentSet() {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        for (String url : urls) {
+            set.add(url);
+        }
+        return set;
+    }
+
+    // Половина адресов есть в множестве, половина нет - как при обходе, где большинство ссылок уже встречались
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public int containsVisitedUrlSet() {
+        int found = 0;
+        for (int i = 0; i < URLS; i++) {
+            if (filledHashes.contains((i & 1) == 0 ? urls[i] : missing[i])) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public int containsConcurrentSet() {
+        int found = 0;
+        for (int i = 0; i < URLS; i++) {
+            if (filledStrings.contains((i & 1) == 0 ? urls[i] : missing[i])) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
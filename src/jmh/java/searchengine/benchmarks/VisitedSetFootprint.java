@@ -0,0 +1,54 @@
+package searchengine.benchmarks;
+
+import searchengine.services.crawler.VisitedUrlSet;
+
+import java.lang.ref.Reference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Занимаемая память на адрес для множеств посещённых адресов. JMH измеряет скорость, а не удерживаемую
+ * память, поэтому это отдельная программа:
+ * java -Xmx4g -cp target/benchmarks.jar searchengine.benchmarks.VisitedSetFootprint [число адресов]
+ * Строки адресов создаются заново для каждого множества, так что в размер ConcurrentHashMap входят и они.
+ */
+public final class VisitedSetFootprint {
+
+    private VisitedSetFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        report("VisitedUrlSet", count, () -> {
+            VisitedUrlSet set = new VisitedUrlSet();
+            for (String url : SyntheticUrls.generate(count, Corpus.SEED)) {
+                set.add(url);
+            }
+            return set;
+        });
+        report("ConcurrentHashMap.newKeySet", count, () -> {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            for (String url : SyntheticUrls.generate(count, Corpus.SEED)) {
+                set.add(url);
+            }
+            return set;
+        });
+    }
+
+    private static void report(String name, int count, Supplier<Object> build) {
+        long before = usedHeap();
+        Object set = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(set);  // Множество должно оставаться достижимым до второго замера
+        System.out.printf("%-28s %,d адресов: %.1f байт на адрес%n", name, count, (after - before) / (double) count);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
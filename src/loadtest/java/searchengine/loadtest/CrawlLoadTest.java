@@ -0,0 +1,234 @@
+package searchengine.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.Application;
+import searchengine.config.CrawlerSettings.ContentStorage;
+import searchengine.loadtest.SyntheticSiteServer.Shape;
+import searchengine.services.IndexingService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный обход без обращения к настоящим сайтам: приложение поднимается с профилем loadtest
+ * (встроенная H2 в режиме MySQL), единственным сайтом в конфигурации становится SyntheticSiteServer,
+ * и IndexingService обходит его целиком так же, как /api/startIndexing. Для каждого режима хранения
+ * HTML обход повторяется в новом контексте и на пустой базе.
+ *
+ * mvn -P loadtest compile exec:java -Dexec.args="--loadtest.pages=5000 --indexing-settings.crawler.parallelism=32"
+ *
+ * Параметры сайта: --loadtest.pages, fan-out, latency, error-rate, assets, words, seed;
+ * --loadtest.storage - режимы через запятую или all; --loadtest.timeout - предел обхода, с;
+ * --loadtest.warmup=false отключает пробный обход, который прогревает JIT перед замерами;
+ * --loadtest.nodes=N поднимает N контекстов на одной базе в распределённом режиме (crawler.distributed):
+ * индексацию запускает первый, остальные подключаются к обходу через общую очередь crawl_queue.
+ * Остальные аргументы передаются Spring как есть: так подбираются настройки обхода и пакетной записи,
+ * а --spring.datasource.* направляет запись в MySQL вместо H2.
+ */
+public final class CrawlLoadTest {
+
+    private static final String PREFIX = "--loadtest.";
+    private static final long HEAP_SAMPLE_INTERVAL = 50;  // мс
+
+    private CrawlLoadTest() {
+    }
+
+    // Итог одного обхода; задержки - средние по таймерам crawler.fetch и crawler.db.write за обход
+    private record Report(ContentStorage storage, double seconds, long pages, long lemmas, long indexRows,
+                          long contentBytes, long peakHeap, long requests, long writes, double fetchMillis,
+                          double writeMillis, String status) {
+
+        double pagesPerSecond() {
+            return pages / seconds;
+        }
+
+        double rowsPerSecond() {
+            return (pages + lemmas + indexRows) / seconds;
+        }
+
+        double writesPerSecond() {
+            return writes / seconds;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(PREFIX)) {
+                String[] option = arg.substring(PREFIX.length()).split("=", 2);
+                options.put(option[0], option.length > 1 ? option[1] : "true");
+            } else {
+                springArgs.add(arg);
+            }
+        }
+        Shape shape = new Shape(
+                Integer.parseInt(options.getOrDefault("pages", "2000")),
+                Integer.parseInt(options.getOrDefault("fan-out", "8")),
+                Integer.parseInt(options.getOrDefault("latency", "20")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0.02")),
+                Integer.parseInt(options.getOrDefault("assets", "3")),
+                Integer.parseInt(options.getOrDefault("words", "400")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        if (shape.pages() < 1 || shape.fanOut() < 1) {
+            throw new IllegalArgumentException("pages и fan-out должны быть положительными");
+        }
+        List<ContentStorage> storages = parseStorages(options.getOrDefault("storage", "compressed"));
+        long timeout = Long.parseLong(options.getOrDefault("timeout", "1800"));
+        int nodes = Integer.parseInt(options.getOrDefault("nodes", "1"));
+        if (nodes > 1) {
+            springArgs.add("--indexing-settings.crawler.distributed=true");
+        }
+
+        List<Report> reports = new ArrayList<>();
+        try (SyntheticSiteServer site = SyntheticSiteServer.start(shape)) {
+            System.out.println("Синтетический сайт " + site.url() + ": " + shape);
+            if (Boolean.parseBoolean(options.getOrDefault("warmup", "true"))) {
+                crawl(site, storages.get(0), springArgs, nodes, timeout);  // Иначе первый режим измерялся бы вместе с компиляцией JIT
+            }
+            for (ContentStorage storage : storages) {
+                reports.add(crawl(site, storage, springArgs, nodes, timeout));
+            }
+        }
+        print(shape, reports);
+    }
+
+    private static List<ContentStorage> parseStorages(String value) {
+        if (value.equalsIgnoreCase("all")) {
+            return List.of(ContentStorage.values());
+        }
+        return Arrays.stream(value.split(","))
+                .map(storage -> ContentStorage.valueOf(storage.trim().toUpperCase(Locale.ROOT)))
+                .toList();
+    }
+
+    private static Report crawl(SyntheticSiteServer site, ContentStorage storage, List<String> springArgs, int nodes,
+                                long timeout) throws InterruptedException {
+        List<String> args = new ArrayList<>(springArgs);
+        args.add("--indexing-settings.sites[0].url=" + site.url());
+        args.add("--indexing-settings.sites[0].name=Load test");
+        args.add("--indexing-settings.crawler.content-storage=" + storage.name().toLowerCase(Locale.ROOT));
+
+        try (ConfigurableApplicationContext context = start(args, 0);
+             NodeGroup others = new NodeGroup()) {
+            for (int node = 1; node < nodes; node++) {
+                others.add(start(args, node));  // Схему уже создал первый узел
+            }
+            IndexingService indexingService = context.getBean(IndexingService.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<MeterRegistry> registries = new ArrayList<>(List.of(context.getBean(MeterRegistry.class)));
+            others.contexts.forEach(other -> registries.add(other.getBean(MeterRegistry.class)));
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, HEAP_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+            long requestsBefore = site.requests();
+            long started = System.nanoTime();
+            indexingService.startIndexing();
+            long deadline = started + TimeUnit.SECONDS.toNanos(timeout);
+            while (indexingService.isIndexing()) {
+                if (System.nanoTime() > deadline && indexingService.stopIndexing()) {
+                    System.err.println("Обход не уложился в " + timeout + " с и остановлен.");
+                    deadline = Long.MAX_VALUE;
+                }
+                Thread.sleep(100);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            sampler.shutdownNow();
+
+            return new Report(storage, seconds,
+                    count(jdbcTemplate, "SELECT COUNT(*) FROM page"),
+                    count(jdbcTemplate, "SELECT COUNT(*) FROM lemma"),
+                    count(jdbcTemplate, "SELECT COUNT(*) FROM `index`"),
+                    count(jdbcTemplate, "SELECT COALESCE(SUM(LENGTH(content)), 0) + COALESCE(SUM(LENGTH(content_compressed)), 0) FROM page"),
+                    peakHeap.get(),
+                    site.requests() - requestsBefore,
+                    timers(registries, "crawler.db.write").stream().mapToLong(Timer::count).sum(),
+                    meanMillis(timers(registries, "crawler.fetch")),
+                    meanMillis(timers(registries, "crawler.db.write")),
+                    jdbcTemplate.queryForObject("SELECT status FROM site", String.class));
+        }
+    }
+
+    // Узел 0 создаёт схему в H2 и удаляет её при закрытии, остальные работают с готовой
+    private static ConfigurableApplicationContext start(List<String> args, int node) {
+        List<String> nodeArgs = new ArrayList<>(args);
+        nodeArgs.add("--indexing-settings.crawler.node-id=node-" + node);
+        if (node > 0) {
+            nodeArgs.add("--spring.jpa.hibernate.ddl-auto=none");
+        }
+        return new SpringApplicationBuilder(Application.class)
+                .profiles("loadtest")
+                .web(WebApplicationType.NONE)
+                .run(nodeArgs.toArray(String[]::new));
+    }
+
+    // Дополнительные узлы закрываются раньше первого: его контекст держит базу H2
+    private static final class NodeGroup implements AutoCloseable {
+
+        private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+        void add(ConfigurableApplicationContext context) {
+            contexts.add(context);
+        }
+
+        @Override
+        public void close() {
+            contexts.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    private static List<Timer> timers(List<MeterRegistry> registries, String name) {
+        return registries.stream().flatMap(registry -> registry.find(name).timers().stream()).toList();
+    }
+
+    private static double meanMillis(Collection<Timer> timers) {
+        long count = timers.stream().mapToLong(Timer::count).sum();
+        double total = timers.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum();
+        return count == 0 ? 0 : total / count;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value != null ? value : 0;
+    }
+
+    private static void print(Shape shape, List<Report> reports) {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Сайт: %d страниц, fan-out %d, задержка %d мс, ошибок %.1f%%, медиафайлов на странице %d%n",
+                shape.pages(), shape.fanOut(), shape.latency(), shape.errorRate() * 100, shape.assets());
+        System.out.printf(Locale.ROOT, "%-10s %-8s %8s %9s %10s %10s %10s %10s %9s %10s %9s %12s %10s%n",
+                "хранение", "статус", "время, с", "страниц", "стр/с", "запросов", "строк БД", "строк/с",
+                "пакетов/с", "запись, мс", "HTTP, мс", "HTML, КБ", "heap, МБ");
+        for (Report report : reports) {
+            System.out.printf(Locale.ROOT, "%-10s %-8s %8.1f %9d %10.1f %10d %10d %10.0f %9.1f %10.1f %9.1f %12d %10d%n",
+                    report.storage().name().toLowerCase(Locale.ROOT), report.status(), report.seconds(), report.pages(),
+                    report.pagesPerSecond(), report.requests(), report.pages() + report.lemmas() + report.indexRows(),
+                    report.rowsPerSecond(), report.writesPerSecond(), report.writeMillis(), report.fetchMillis(),
+                    report.contentBytes() / 1024, report.peakHeap() / (1024 * 1024));
+        }
+        System.out.println("Строки БД - записанные строки page, lemma и index; пакеты - транзакции PageBatchWriter, запись - "
+                + "их средняя длительность; HTTP - средний запрос без ожидания очереди хоста; HTML - байты content и "
+                + "content_compressed; heap - пик занятой кучи за обход.");
+    }
+}
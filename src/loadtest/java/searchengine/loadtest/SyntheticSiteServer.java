@@ -0,0 +1,186 @@
+package searchengine.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный сайт для нагрузочного обхода: граф страниц строится по номеру страницы и seed, поэтому
+ * каждый запуск с теми же параметрами обходит один и тот же сайт. Страница n ссылается на своих
+ * потомков в дереве n * fanOut + 1 .. n * fanOut + fanOut (так достижимы все страницы), на родителя
+ * и на fanOut / 2 случайных страниц - как меню и блоки «похожие товары», которые обход должен отсеять
+ * как уже виденные. Медиафайлы берутся из общего набора, так что большинство из них встречаются
+ * на многих страницах.
+ */
+public final class SyntheticSiteServer implements AutoCloseable {
+
+    // Обычные слова, которые морфология распознаёт: иначе лемм и строк индекса было бы меньше, чем на реальном сайте
+    private static final String[] WORDS = ("доставка заказ товар цена магазин телефон смартфон экран камера батарея " +
+            "корпус модель гарантия покупатель отзыв скидка каталог наушники планшет зарядка память процессор " +
+            "быстрый новый удобный лёгкий надёжный большой маленький чёрный белый хороший качественный доступный " +
+            "купить выбрать оплатить получить вернуть сравнить заказать доставить проверить работать " +
+            "институт физика исследование лаборатория учёный статья журнал конференция эксперимент результат " +
+            "измерение излучение волна частота плазма лазер прибор установка метод теория модель данные " +
+            "научный прикладной современный точный оптический квантовый нелинейный высокий низкий " +
+            "изучать измерять наблюдать публиковать разрабатывать показать получать исследовать " +
+            "город год время человек работа место день вопрос система решение развитие область " +
+            "в на и с по для при из о от до за под над через после без между").split(" ");
+
+    private static final String[] ASSET_TYPES = {"img", "script", "css"};
+
+    private final Shape shape;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * pages - число HTML-страниц, fanOut - ссылок на потомков, latency - задержка каждого ответа, мс,
+     * errorRate - доля страниц, отвечающих 404 или 500, assets - медиафайлов на странице,
+     * words - слов текста на странице.
+     */
+    public record Shape(int pages, int fanOut, int latency, double errorRate, int assets, int words, long seed) {
+    }
+
+    private SyntheticSiteServer(Shape shape) throws IOException {
+        this.shape = shape;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public static SyntheticSiteServer start(Shape shape) throws IOException {
+        SyntheticSiteServer site = new SyntheticSiteServer(shape);
+        site.server.start();
+        return site;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (shape.latency() > 0) {
+                Thread.sleep(shape.latency());
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/")) {
+                respond(exchange, 200, "text/html; charset=utf-8", page(0));
+                return;
+            }
+            if (path.startsWith("/page/") && path.endsWith(".html")) {
+                int n = parseNumber(path.substring("/page/".length(), path.length() - ".html".length()));
+                if (n > 0 && n < shape.pages()) {
+                    int error = errorCode(n);
+                    respond(exchange, error != 0 ? error : 200, "text/html; charset=utf-8",
+                            error != 0 ? "<html><body><h1>Ошибка " + error + "</h1></body></html>" : page(n));
+                    return;
+                }
+            }
+            if (path.startsWith("/assets/")) {
+                respond(exchange, 200, assetType(path), "/* " + path + " */");
+                return;
+            }
+            respond(exchange, 404, "text/html; charset=utf-8", "<html><body><h1>Страница не найдена</h1></body></html>");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String page(int n) {
+        Random random = new Random(shape.seed() * 31 + n);
+        StringBuilder html = new StringBuilder(shape.words() * 12 + 2048);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Страница ").append(n)
+                .append(' ').append(WORDS[random.nextInt(WORDS.length)]).append("</title>");
+        StringBuilder images = new StringBuilder();
+        for (int i = 0; i < shape.assets(); i++) {
+            int asset = random.nextInt(Math.max(1, shape.assets() * 10));
+            switch (ASSET_TYPES[asset % ASSET_TYPES.length]) {
+                case "img" -> images.append("<img src=\"/assets/photo-").append(asset).append(".png\" alt=\"\">");
+                case "script" -> html.append("<script src=\"/assets/app-").append(asset).append(".js\"></script>");
+                default -> html.append("<link rel=\"stylesheet\" href=\"/assets/style-").append(asset).append(".css\">");
+            }
+        }
+        html.append("</head><body><nav>");
+        if (n > 0) {
+            html.append("<a href=\"").append(pagePath((n - 1) / shape.fanOut())).append("\">Назад</a> ");
+        }
+        for (int i = 1; i <= shape.fanOut(); i++) {
+            long child = (long) n * shape.fanOut() + i;
+            if (child < shape.pages()) {
+                html.append("<a href=\"").append(pagePath((int) child)).append("\">Раздел ").append(child).append("</a> ");
+            }
+        }
+        for (int i = 0; i < shape.fanOut() / 2; i++) {
+            int other = random.nextInt(shape.pages());
+            html.append("<a href=\"").append(pagePath(other)).append("#top\">Похожее ").append(other).append("</a> ");
+        }
+        html.append("</nav><main><h1>Страница ").append(n).append("</h1>").append(images).append("<p>");
+        for (int i = 0; i < shape.words(); i++) {
+            html.append(WORDS[random.nextInt(WORDS.length)]).append(i % 40 == 39 ? ".</p><p>" : " ");
+        }
+        html.append("</p></main></body></html>");
+        return html.toString();
+    }
+
+    // 0 - страница отвечает нормально; главная всегда доступна
+    private int errorCode(int n) {
+        Random random = new Random(shape.seed() ^ (n * 0x9E3779B97F4A7C15L));
+        if (random.nextDouble() >= shape.errorRate()) {
+            return 0;
+        }
+        return random.nextBoolean() ? 404 : 500;
+    }
+
+    private static String pagePath(int n) {
+        return n == 0 ? "/" : "/page/" + n + ".html";
+    }
+
+    private static String assetType(String path) {
+        if (path.endsWith(".png")) {
+            return "image/png";
+        }
+        return path.endsWith(".js") ? "application/javascript" : "text/css";
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
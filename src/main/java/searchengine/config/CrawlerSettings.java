@@ -0,0 +1,66 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawler")
+public class CrawlerSettings {
+    private int parallelism = 16;  // Страниц одного сайта в работе одновременно: загрузка и разбор
+    private int maxDepth = 20;  // Максимальная глубина ссылок от главной страницы
+    private int maxPages = 50_000;  // Максимальное число страниц сайта за один обход
+    private int maxConcurrentFetches = 256;  // Общий лимит одновременных HTTP-запросов по всем сайтам
+    private int parseThreads = Runtime.getRuntime().availableProcessors();  // Потоки разбора и сохранения страниц
+    private String userAgent = "HeliontSearchBot";
+    private String referrer = "http://www.google.com";
+    private int timeout = 10_000;  // Таймаут HTTP-запроса, мс
+    private int maxBodySize = 5 * 1024 * 1024;  // Страницы больше этого размера обрезаются, байт
+    private int extractMaxBytes = 2 * 1024 * 1024;  // Текст, ссылки и сохраняемый HTML берутся из этого начала страницы, байт
+    private ContentStorage contentStorage = ContentStorage.HTML;  // Как хранить HTML страниц
+    private boolean incremental = false;  // Переиндексация без удаления сайта: условный GET и сравнение хэша содержимого
+
+    // Вежливость по отношению к хостам
+    private int hostMaxConnections = 4;  // Одновременных запросов к одному хосту
+    private long hostMinDelay = 200;  // Минимальный интервал между запросами к хосту, мс
+    private long hostMaxDelay = 30_000;  // Верхняя граница адаптивного интервала, мс
+    private long hostTargetLatency = 2_000;  // При большей средней задержке ответа интервал увеличивается, мс
+    private long maxRetryAfter = 120_000;  // Retry-After учитывается не дольше этого времени, мс
+    private int maxRetries = 2;  // Повторы запроса после 429/503
+
+    // Пакетная запись страниц
+    private int writeBatchSize = 100;  // Страниц в одном пакете INSERT
+    private long writeFlushInterval = 1_000;  // Неполный пакет записывается не реже, чем раз в это время, мс
+    private long statusFlushInterval = 1_000;  // Период обновления status_time индексируемых сайтов, мс
+    private long checkpointInterval = 30_000;  // Период сохранения очереди обхода для продолжения после сбоя, мс; 0 - не сохранять
+
+    // Удаление страниц и лемм устаревших поколений
+    private int gcBatchSize = 500;  // Страниц или лемм в одной транзакции удаления
+    private long gcInterval = 60_000;  // Период проверки устаревших поколений, мс
+
+    // Распределённый обход: несколько экземпляров берут адреса из общей таблицы crawl_queue
+    private boolean distributed = false;
+    private String nodeId = "";  // Имя узла в аренде адресов; пустое - имя процесса и случайный суффикс
+    private long leaseTime = 60_000;  // Срок аренды адресов, продлевается каждую треть срока, пока узел жив, мс
+    private long queuePollInterval = 2_000;  // Как часто узел ищет сайты, обход которых начат другим узлом, мс
+
+    // Значения из настроек сайта имеют приоритет над общими
+    public CrawlLimits limitsFor(Site site) {
+        return new CrawlLimits(
+                site.getParallelism() != null ? site.getParallelism() : parallelism,
+                site.getMaxDepth() != null ? site.getMaxDepth() : maxDepth,
+                site.getMaxPages() != null ? site.getMaxPages() : maxPages);
+    }
+
+    public record CrawlLimits(int parallelism, int maxDepth, int maxPages) {
+    }
+
+    public enum ContentStorage {
+        HTML,  // Исходный HTML в page.content
+        COMPRESSED,  // HTML, сжатый Deflate, в page.content_compressed
+        TEXT  // Только заголовок и текст страницы; инкрементальная переиндексация тогда не использует условный GET
+    }
+}
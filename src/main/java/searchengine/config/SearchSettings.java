@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private double frequentLemmaThreshold = 0.8;  // Леммы, встречающиеся на большей доле страниц сайта, не участвуют в поиске
+    private int defaultLimit = 20;
+    private int maxLimit = 100;
+    private long siteSizeCacheTtl = 60_000;  // Как долго кэшируется число страниц сайта, мс
+    private int cacheMaxEntries = 1_000;  // Запросов в кэше результатов
+    private int cacheMaxHits = 2_000_000;  // Суммарно результатов во всех записях кэша
+}
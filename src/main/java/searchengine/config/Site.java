@@ -8,4 +8,9 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+
+    // Необязательные переопределения общих настроек обхода (indexing-settings.crawler)
+    private Integer parallelism;
+    private Integer maxDepth;
+    private Integer maxPages;
 }
@@ -2,12 +2,16 @@ package searchengine.controllers;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import searchengine.services.IndexingService;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,10 +21,13 @@ public class ApiController {
 
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
+    private final SearchService searchService;
 
-    public ApiController(StatisticsService statisticsService, IndexingService indexingService) {
+    public ApiController(StatisticsService statisticsService, IndexingService indexingService,
+                         SearchService searchService) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
+        this.searchService = searchService;
     }
 
     // Получение статистики
@@ -48,4 +55,56 @@ public class ApiController {
         response.put("message", "Индексация успешно запущена.");
         return ResponseEntity.ok(response);
     }
+
+    // Остановка индексации
+    @GetMapping("/stopIndexing")
+    public ResponseEntity<Map<String, Object>> stopIndexing() {
+        if (!indexingService.stopIndexing()) {
+            return errorResponse("Индексация не запущена");
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("result", true);
+        return ResponseEntity.ok(response);
+    }
+
+    // Добавление или обновление отдельной страницы
+    @PostMapping("/indexPage")
+    public ResponseEntity<Map<String, Object>> indexPage(@RequestParam(required = false) String url) {
+        if (url == null || url.isBlank()) {
+            return errorResponse("Не указан адрес страницы");
+        }
+        try {
+            indexingService.indexPage(url.trim());
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage());
+        } catch (IOException e) {
+            return errorResponse("Страница недоступна: " + e.getMessage());
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("result", true);
+        return ResponseEntity.ok(response);
+    }
+
+    // Поиск по проиндексированным сайтам
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam(required = false) String query,
+                                    @RequestParam(required = false) String site,
+                                    @RequestParam(defaultValue = "0") int offset,
+                                    @RequestParam(defaultValue = "0") int limit) {
+        if (query == null || query.isBlank()) {
+            return errorResponse("Задан пустой поисковый запрос");
+        }
+        try {
+            return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> errorResponse(String error) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("result", false);
+        response.put("error", error);
+        return ResponseEntity.badRequest().body(response);
+    }
 }
@@ -1,5 +1,6 @@
 package searchengine.dto.statistics;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 @Data
@@ -7,5 +8,6 @@ public class TotalStatistics {
     private int sites;
     private int pages;
     private int lemmas;
+    @JsonProperty("isIndexing")  // Имя поля, которое читает интерфейс
     private boolean indexing;
 }
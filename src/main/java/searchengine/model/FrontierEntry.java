@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Адрес, поставленный в очередь обхода, но ещё не обработанный: контрольная точка для продолжения обхода
+@Entity
+@Table(name = "crawl_frontier", indexes = @Index(name = "idx_frontier_site", columnList = "site_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class FrontierEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(columnDefinition = "VARCHAR(1024)", nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private int depth;
+}
@@ -0,0 +1,34 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(name = "uk_lemma_site_generation", columnNames = {"site_id", "generation", "lemma"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class Lemma {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    // Частоты считаются отдельно для каждого поколения страниц сайта
+    @Column(columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
+    // Двоичное сравнение: в *_ai_ci "ёлка" и "елка", "йод" и "иод" - одна строка, и upsert сливал бы разные леммы
+    @Column(columnDefinition = "VARCHAR(255) COLLATE utf8mb4_bin", nullable = false)
+    private String lemma;
+
+    // Количество страниц сайта, на которых встречается лемма
+    @Column(nullable = false)
+    private int frequency;
+}
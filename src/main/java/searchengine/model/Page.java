@@ -6,12 +6,14 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "page", indexes = @Index(name = "idx_path", columnList = "path"))
+@Table(name = "page", indexes = {@Index(name = "idx_path", columnList = "path"),
+        @Index(name = "idx_page_site_generation", columnList = "site_id, generation")})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Page {
 
+    // С IDENTITY Hibernate вставляет строки по одной, поэтому пакеты страниц пишет IndexBatchRepository.insertPages
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
@@ -20,15 +22,40 @@ public class Page {
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
+    // Поколение индекса сайта, к которому относится страница (см. Site.generation)
+    @Column(columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
     @Column(length = 255, nullable = false)
     private String path;
 
     @Column(nullable = false)
     private int code;
 
+    // Пустая строка, если HTML хранится сжатым или не хранится (crawler.content-storage)
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
+    @Column(name = "content_compressed", columnDefinition = "MEDIUMBLOB")
+    private byte[] compressedContent;
+
+    // Извлекаются при индексации, чтобы выдача не разбирала HTML страницы на каждый запрос
+    @Column(length = 512)
+    private String title;
+
+    @Column(name = "body_text", columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    // Для инкрементальной переиндексации: хэш тела ответа и валидаторы для условного GET
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(length = 255)
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
     public Page(Site site, String path, int code, String content) {
         this.site = site;
         this.path = path;
@@ -0,0 +1,49 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Адрес общей очереди обхода (crawler.distributed). Уникальный ключ по хэшу адреса не даёт узлам поставить
+// одну страницу поколения дважды; выборка аренды идёт по индексу (site_id, generation, state)
+@Entity
+@Table(name = "crawl_queue",
+        uniqueConstraints = @UniqueConstraint(name = "uk_queue_url", columnNames = {"site_id", "generation", "url_hash"}),
+        indexes = @Index(name = "idx_queue_state", columnList = "site_id, generation, state"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class QueueEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(nullable = false)
+    private int generation;
+
+    @Column(name = "url_hash", nullable = false)
+    private long urlHash;
+
+    @Column(columnDefinition = "VARCHAR(1024)", nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private int depth;  // -1 - медиафайл: строка только закрепляет его проверку за одним узлом
+
+    @Column(columnDefinition = "ENUM('PENDING', 'LEASED', 'DONE')", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private QueueState state;
+
+    @Column(name = "lease_owner", columnDefinition = "VARCHAR(64)")
+    private String leaseOwner;
+
+    // Аренда действует до этого момента, мс с начала эпохи; просроченную забирает другой узел
+    @Column(name = "lease_until", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long leaseUntil;
+}
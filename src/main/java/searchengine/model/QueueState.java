@@ -0,0 +1,8 @@
+package searchengine.model;
+
+// Состояние адреса в общей очереди распределённого обхода
+public enum QueueState {
+    PENDING,  // Ждёт узла
+    LEASED,  // Взят узлом до lease_until
+    DONE  // Обработан; строка остаётся, чтобы адрес не попал в очередь повторно
+}
@@ -0,0 +1,35 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Поисковый индекс: сколько раз лемма встречается на странице. index и rank - зарезервированные слова MySQL.
+// Индекс (lemma_id, page_id) отдаёт posting list леммы уже отсортированным по странице
+@Entity
+@Table(name = "`index`", indexes = @Index(name = "idx_index_lemma_page", columnList = "lemma_id, page_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class SearchIndex {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "page_id", nullable = false)
+    private Page page;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "lemma_id", nullable = false)
+    private Lemma lemma;
+
+    @Column(name = "`rank`", nullable = false)
+    private float rank;
+
+    // Начала первых вхождений леммы в page.text (varint-разности, см. LemmaOccurrences)
+    @Column(columnDefinition = "VARBINARY(255)")
+    private byte[] positions;
+}
@@ -34,6 +34,22 @@ public class Site {
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;  // Имя сайта
 
+    // Счётчики для статистики: обновляются во время индексации, чтобы /api/statistics не считал COUNT(*)
+    @Column(name = "page_count", columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int pageCount;
+
+    @Column(name = "lemma_count", columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int lemmaCount;
+
+    // Поколение страниц и лемм, которое видят поиск и статистика. Полная переиндексация пишет в buildingGeneration,
+    // а после обхода переключает generation одним UPDATE строки сайта; старое поколение удаляет GenerationCollector
+    @Column(columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
+    // Поколение незавершённой полной переиндексации (идущей, остановленной или упавшей); null - такой нет
+    @Column(name = "building_generation")
+    private Integer buildingGeneration;
+
     @ManyToOne
     @JoinColumn(name = "parent_site_id", nullable = true)
     private Site parentSite;  // Связь с родительским сайтом (если есть)
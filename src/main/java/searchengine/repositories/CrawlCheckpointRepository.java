@@ -0,0 +1,66 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Контрольные точки обхода: очередь необработанных адресов сайта в таблице crawl_frontier.
+ * Обработанные адреса отдельно не хранятся - это пути из таблицы page.
+ */
+@Repository
+public class CrawlCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CrawlCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Адрес -> глубина в порядке постановки в очередь
+    public Map<String, Integer> loadFrontier(int siteId) {
+        Map<String, Integer> frontier = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT url, depth FROM crawl_frontier WHERE site_id = ? ORDER BY id",
+                rs -> {
+                    frontier.put(rs.getString("url"), rs.getInt("depth"));
+                }, siteId);
+        return frontier;
+    }
+
+    // Новая контрольная точка заменяет предыдущую целиком
+    @Transactional
+    public void replaceFrontier(int siteId, Map<String, Integer> frontier) {
+        deleteFrontier(siteId);
+        List<Object[]> args = new ArrayList<>(frontier.size());
+        frontier.forEach((url, depth) -> args.add(new Object[]{siteId, url, depth}));
+        jdbcTemplate.batchUpdate("INSERT INTO crawl_frontier (site_id, url, depth) VALUES (?, ?, ?)", args);
+    }
+
+    public void deleteFrontier(int siteId) {
+        jdbcTemplate.update("DELETE FROM crawl_frontier WHERE site_id = ?", siteId);
+    }
+
+    // Сохранённые адреса поколения; у медиафайлов нет хэша содержимого, у HTML-страниц он есть всегда
+    public SavedPaths findSavedPaths(int siteId, int generation) {
+        List<String> pages = new ArrayList<>();
+        List<String> media = new ArrayList<>();
+        jdbcTemplate.query("SELECT path, content_hash IS NULL AS media FROM page WHERE site_id = ? AND generation = ?",
+                rs -> {
+                    (rs.getBoolean("media") ? media : pages).add(rs.getString("path"));
+                }, siteId, generation);
+        return new SavedPaths(pages, media);
+    }
+
+    public record SavedPaths(List<String> pages, List<String> media) {
+
+        public static SavedPaths empty() {
+            return new SavedPaths(List.of(), List.of());
+        }
+
+        public int size() {
+            return pages.size() + media.size();
+        }
+    }
+}
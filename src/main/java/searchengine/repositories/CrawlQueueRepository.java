@@ -0,0 +1,106 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Общая очередь распределённого обхода в таблице crawl_queue. Узлы берут адреса в аренду через
+ * SELECT ... FOR UPDATE SKIP LOCKED (MySQL 8): строки, которые сейчас забирает другой узел, пропускаются
+ * без ожидания. Аренда, не продлённая до lease_until, считается брошенной упавшим узлом и выдаётся снова.
+ */
+@Repository
+public class CrawlQueueRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public CrawlQueueRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    public record NewUrl(long urlHash, String url, int depth) {
+    }
+
+    // expired - аренда перехвачена у узла, который её не продлил
+    public record LeasedUrl(long id, String url, int depth, boolean expired) {
+    }
+
+    // Адреса, которые уже есть в очереди поколения, пропускаются уникальным ключом uk_queue_url
+    public void enqueue(int siteId, int generation, List<NewUrl> urls) {
+        List<Object[]> args = new ArrayList<>(urls.size());
+        for (NewUrl url : urls) {
+            args.add(new Object[]{siteId, generation, url.urlHash(), url.url(), url.depth()});
+        }
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO crawl_queue (site_id, generation, url_hash, url, depth, state, lease_until) " +
+                "VALUES (?, ?, ?, ?, ?, 'PENDING', 0)", args);
+    }
+
+    // Медиафайл проверяет только тот узел, который первым вставил его строку
+    public boolean claimMedia(int siteId, int generation, long urlHash, String url) {
+        return jdbcTemplate.update("INSERT IGNORE INTO crawl_queue (site_id, generation, url_hash, url, depth, state, lease_until) " +
+                "VALUES (?, ?, ?, ?, -1, 'DONE', 0)", siteId, generation, urlHash, url) == 1;
+    }
+
+    // Ждущие и просроченные адреса в порядке постановки, то есть в ширину от главной страницы
+    @Transactional
+    public List<LeasedUrl> lease(int siteId, int generation, String owner, long now, long leaseUntil, int limit) {
+        List<LeasedUrl> leased = jdbcTemplate.query("SELECT id, url, depth, state FROM crawl_queue " +
+                        "WHERE site_id = ? AND generation = ? AND (state = 'PENDING' OR state = 'LEASED' AND lease_until < ?) " +
+                        "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, rowNum) -> new LeasedUrl(rs.getLong("id"), rs.getString("url"), rs.getInt("depth"),
+                        "LEASED".equals(rs.getString("state"))),
+                siteId, generation, now, limit);
+        if (!leased.isEmpty()) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("owner", owner)
+                    .addValue("leaseUntil", leaseUntil)
+                    .addValue("ids", leased.stream().map(LeasedUrl::id).toList());
+            namedJdbcTemplate.update("UPDATE crawl_queue SET state = 'LEASED', lease_owner = :owner, lease_until = :leaseUntil " +
+                    "WHERE id IN (:ids)", params);
+        }
+        return leased;
+    }
+
+    // Пульс узла: одним UPDATE продлевает все его аренды
+    public void extendLeases(String owner, long leaseUntil) {
+        jdbcTemplate.update("UPDATE crawl_queue SET lease_until = ? WHERE lease_owner = ? AND state = 'LEASED'", leaseUntil, owner);
+    }
+
+    // Адрес, аренду которого уже перехватил другой узел, остаётся за ним
+    public void markDone(String owner, Collection<Long> ids) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("owner", owner)
+                .addValue("ids", ids);
+        namedJdbcTemplate.update("UPDATE crawl_queue SET state = 'DONE', lease_owner = NULL WHERE lease_owner = :owner AND id IN (:ids)", params);
+    }
+
+    // Незавершённые аренды остановленного обхода возвращаются в очередь
+    public void release(String owner, int siteId, int generation) {
+        jdbcTemplate.update("UPDATE crawl_queue SET state = 'PENDING', lease_owner = NULL, lease_until = 0 " +
+                "WHERE site_id = ? AND generation = ? AND lease_owner = ? AND state = 'LEASED'", siteId, generation, owner);
+    }
+
+    public boolean hasOpen(int siteId, int generation) {
+        Integer exists = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM crawl_queue " +
+                "WHERE site_id = ? AND generation = ? AND state <> 'DONE')", Integer.class, siteId, generation);
+        return exists != null && exists == 1;
+    }
+
+    // Страниц, поставленных в очередь поколения за весь обход: для лимита maxPages
+    public int count(int siteId, int generation) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM crawl_queue WHERE site_id = ? AND generation = ? AND depth >= 0",
+                Integer.class, siteId, generation);
+        return count != null ? count : 0;
+    }
+
+    // Удаляет не больше limit строк сайта; возвращает число удалённых
+    public int deleteBySite(int siteId, int limit) {
+        return jdbcTemplate.update("DELETE FROM crawl_queue WHERE site_id = ? LIMIT ?", siteId, limit);
+    }
+}
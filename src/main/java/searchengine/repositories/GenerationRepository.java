@@ -0,0 +1,49 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Удаление страниц и лемм устаревших поколений сайта. Устаревшими считаются поколения ниже активного
+ * и брошенные сборки между активным и строящимся. Поиск их не видит, поэтому частоты лемм
+ * не пересчитываются: леммы удаляются целиком после страниц.
+ */
+@Repository
+public class GenerationRepository {
+
+    private static final String STALE = "site_id = ? AND (generation < ? OR (generation > ? AND generation < ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public GenerationRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    // building - строящееся поколение; если его нет, передаётся активное
+    public List<Integer> findStalePageIds(int siteId, int active, int building, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM page WHERE " + STALE + " LIMIT ?",
+                Integer.class, siteId, active, active, building, limit);
+    }
+
+    public List<Integer> findStaleLemmaIds(int siteId, int active, int building, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM lemma WHERE " + STALE + " LIMIT ?",
+                Integer.class, siteId, active, active, building, limit);
+    }
+
+    // Индекс ссылается на страницы, поэтому удаляется первым
+    public int deletePagesWithIndex(Collection<Integer> pageIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", pageIds);
+        namedJdbcTemplate.update("DELETE FROM `index` WHERE page_id IN (:ids)", params);
+        return namedJdbcTemplate.update("DELETE FROM page WHERE id IN (:ids)", params);
+    }
+
+    public int deleteLemmas(Collection<Integer> lemmaIds) {
+        return namedJdbcTemplate.update("DELETE FROM lemma WHERE id IN (:ids)", new MapSqlParameterSource("ids", lemmaIds));
+    }
+}
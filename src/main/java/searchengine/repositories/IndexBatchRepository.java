@@ -0,0 +1,188 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import searchengine.model.Page;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Пакетная запись страниц, лемм и индекса через JDBC: многострочные INSERT и upsert'ы, которые JPA
+ * с идентификаторами IDENTITY выразить не может. Вызывается внутри транзакции записи страниц и использует то же соединение.
+ */
+@Repository
+public class IndexBatchRepository {
+
+    private static final int IN_CHUNK = 1000;
+    // Порядок блокировки строк лемм, общий для upsertLemmas и deletePages; колонка lemma сравнивает так же (utf8mb4_bin)
+    private static final Comparator<String> LEMMA_LOCK_ORDER = Comparator.naturalOrder();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public IndexBatchRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    public record IndexRow(int pageId, int lemmaId, float rank, byte[] positions) {
+    }
+
+    // Удалённые строки page и lemma: леммы, частота которых опустилась до нуля
+    public record DeletedRows(int pages, int lemmas) {
+    }
+
+    // Состояние сохранённой страницы для инкрементальной переиндексации, без HTML
+    public record KnownPage(int id, String path, int code, String contentHash, String etag, String lastModified) {
+    }
+
+    // Один пакет INSERT (с rewriteBatchedStatements - многострочный); сгенерированные id записываются в страницы
+    public void insertPages(List<Page> pages) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement("INSERT INTO page (site_id, generation, path, code, " +
+                        "content, content_compressed, title, body_text, content_hash, etag, last_modified) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Page page = pages.get(i);
+                        ps.setInt(1, page.getSite().getId());
+                        ps.setInt(2, page.getGeneration());
+                        ps.setString(3, page.getPath());
+                        ps.setInt(4, page.getCode());
+                        ps.setString(5, page.getContent());
+                        ps.setBytes(6, page.getCompressedContent());
+                        ps.setString(7, page.getTitle());
+                        ps.setString(8, page.getText());
+                        ps.setString(9, page.getContentHash());
+                        ps.setString(10, page.getEtag());
+                        ps.setString(11, page.getLastModified());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return pages.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> generated = keys.getKeyList();
+        if (generated.size() != pages.size()) {
+            throw new IllegalStateException("Получено " + generated.size() + " идентификаторов для " + pages.size() + " страниц");
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).setId(((Number) generated.get(i).values().iterator().next()).intValue());
+        }
+    }
+
+    public List<KnownPage> findKnownPages(int siteId, int generation) {
+        return jdbcTemplate.query("SELECT id, path, code, content_hash, etag, last_modified FROM page WHERE site_id = ? AND generation = ?",
+                (rs, rowNum) -> new KnownPage(rs.getInt("id"), rs.getString("path"), rs.getInt("code"),
+                        rs.getString("content_hash"), rs.getString("etag"), rs.getString("last_modified")),
+                siteId, generation);
+    }
+
+    // Все версии страницы под любым из написаний адреса в поколении; блокировка не даёт двум заменам одной страницы удалить друг друга
+    public List<Integer> findPageIdsForUpdate(int siteId, int generation, Collection<String> paths) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("siteId", siteId)
+                .addValue("generation", generation)
+                .addValue("paths", paths);
+        return namedJdbcTemplate.queryForList("SELECT id FROM page WHERE site_id = :siteId AND generation = :generation " +
+                "AND path IN (:paths) FOR UPDATE", params, Integer.class);
+    }
+
+    /**
+     * Удаляет страницы вместе с их вкладом в индекс: frequency каждой леммы уменьшается на число
+     * удаляемых страниц, где она встречается, леммы с нулевой частотой удаляются.
+     * Возвращает число удалённых страниц и лемм.
+     */
+    public DeletedRows deletePages(Collection<Integer> pageIds) {
+        List<Integer> all = new ArrayList<>(pageIds);
+        int deleted = 0;
+        int deletedLemmas = 0;
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", all.subList(from, Math.min(all.size(), from + IN_CHUNK)));
+            // Сортировка в Java, а не ORDER BY: порядок блокировок тот же, что в upsertLemmas, при любой сортировке базы
+            TreeMap<String, Object[]> byLemma = new TreeMap<>(LEMMA_LOCK_ORDER);
+            namedJdbcTemplate.query("SELECT i.lemma_id, l.lemma, COUNT(*) AS pages FROM `index` i " +
+                            "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id IN (:ids) GROUP BY i.lemma_id, l.lemma",
+                    params, rs -> {
+                        byLemma.put(rs.getString("lemma"), new Object[]{rs.getInt("pages"), rs.getInt("lemma_id")});
+                    });
+            List<Object[]> decrements = new ArrayList<>(byLemma.values());
+            namedJdbcTemplate.update("DELETE FROM `index` WHERE page_id IN (:ids)", params);
+            if (!decrements.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency - ? WHERE id = ?", decrements);
+                List<Integer> lemmaIds = decrements.stream().map(row -> (Integer) row[1]).toList();
+                for (int lemmaFrom = 0; lemmaFrom < lemmaIds.size(); lemmaFrom += IN_CHUNK) {
+                    deletedLemmas += namedJdbcTemplate.update("DELETE FROM lemma WHERE id IN (:ids) AND frequency <= 0", new MapSqlParameterSource("ids",
+                            lemmaIds.subList(lemmaFrom, Math.min(lemmaIds.size(), lemmaFrom + IN_CHUNK))));
+                }
+            }
+            deleted += namedJdbcTemplate.update("DELETE FROM page WHERE id IN (:ids)", params);
+        }
+        return new DeletedRows(deleted, deletedLemmas);
+    }
+
+    /**
+     * Увеличивает frequency на число новых страниц с леммой и возвращает число добавленных лемм.
+     * Сортировка даёт одинаковый порядок блокировок в параллельных транзакциях. Один многострочный
+     * INSERT на порцию, а не batchUpdate: с rewriteBatchedStatements драйвер отвечает на пакет
+     * SUCCESS_NO_INFO для каждой строки, а многострочный запрос возвращает сумму затронутых строк -
+     * 1 за вставку и 2 за обновление (frequency при обновлении всегда растёт).
+     */
+    public int upsertLemmas(int siteId, int generation, Map<String, Integer> pageCounts) {
+        TreeMap<String, Integer> sorted = new TreeMap<>(LEMMA_LOCK_ORDER);
+        sorted.putAll(pageCounts);
+        List<Map.Entry<String, Integer>> rows = new ArrayList<>(sorted.entrySet());
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += IN_CHUNK) {
+            List<Map.Entry<String, Integer>> chunk = rows.subList(from, Math.min(rows.size(), from + IN_CHUNK));
+            StringBuilder sql = new StringBuilder("INSERT INTO lemma (site_id, generation, lemma, frequency) VALUES ");
+            List<Object> args = new ArrayList<>(chunk.size() * 4);
+            for (Map.Entry<String, Integer> entry : chunk) {
+                sql.append(args.isEmpty() ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                args.add(siteId);
+                args.add(generation);
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)");
+            int affected = jdbcTemplate.update(sql.toString(), args.toArray());
+            inserted += 2 * chunk.size() - affected;
+        }
+        return inserted;
+    }
+
+    public Map<String, Integer> findLemmaIds(int siteId, int generation, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>(lemmas.size() * 2);
+        List<String> all = new ArrayList<>(lemmas);
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("siteId", siteId)
+                    .addValue("generation", generation)
+                    .addValue("lemmas", all.subList(from, Math.min(all.size(), from + IN_CHUNK)));
+            namedJdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = :siteId AND generation = :generation AND lemma IN (:lemmas)", params,
+                    rs -> {
+                        ids.put(rs.getString("lemma"), rs.getInt("id"));
+                    });
+        }
+        return ids;
+    }
+
+    public void insertIndexes(List<IndexRow> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)", rows, rows.size(),
+                (ps, row) -> {
+                    ps.setInt(1, row.pageId());
+                    ps.setInt(2, row.lemmaId());
+                    ps.setFloat(3, row.rank());
+                    ps.setBytes(4, row.positions());
+                });
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import searchengine.model.Lemma;
+
+public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
+
+    // Method to count the Lemmas of one generation of a Site
+    @Query("SELECT COUNT(l) FROM Lemma l WHERE l.site.id = :siteId AND l.generation = :generation")
+    int countBySiteIdAndGeneration(int siteId, int generation);
+}
@@ -1,20 +1,40 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface PageRepository extends JpaRepository<Page, Integer> {
 
-    // Method to delete Pages by Site URL
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM Page p WHERE p.site.url = :siteUrl")
-    void deleteBySiteUrl(String siteUrl);
+    // Method to count the Pages of one generation of a Site (the active one for search and statistics)
+    @Query("SELECT COUNT(p) FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation")
+    int countBySiteIdAndGeneration(int siteId, int generation);
+
+    // Projection for search results: everything but the raw HTML content
+    interface PageSummary {
+        int getId();
+
+        String getPath();
+
+        String getTitle();
+
+        String getText();
+    }
+
+    @Query("SELECT p.id AS id, p.path AS path, p.title AS title, p.text AS text FROM Page p WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIdIn(Collection<Integer> ids);
+
+    // Projection with the page body in whichever form it is stored (see PageContentCodec)
+    interface StoredContent {
+        String getContent();
+
+        byte[] getCompressedContent();
+    }
 
-    // Method to count the number of Pages by Site URL (useful for tracking deletions)
-    @Query("SELECT COUNT(p) FROM Page p WHERE p.site.url = :siteUrl")
-    int countBySiteUrl(String siteUrl);
+    // The only query that reads page bodies: a 304 page's links, snippets for pages indexed without text
+    @Query("SELECT p.content AS content, p.compressedContent AS compressedContent FROM Page p WHERE p.id = :id")
+    StoredContent findStoredContentById(int id);
 }
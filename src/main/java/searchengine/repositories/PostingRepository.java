@@ -0,0 +1,86 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.services.Postings;
+
+import java.util.*;
+
+/**
+ * Чтение поискового индекса для /api/search через JDBC: списки страниц леммы (posting list) читаются
+ * в примитивные массивы по индексу (lemma_id, page_id) без создания сущностей.
+ */
+@Repository
+public class PostingRepository {
+
+    private static final int IN_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public PostingRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    public record LemmaStat(int id, String lemma, int frequency) {
+    }
+
+    public List<LemmaStat> findLemmas(int siteId, int generation, Collection<String> lemmas) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("siteId", siteId)
+                .addValue("generation", generation)
+                .addValue("lemmas", lemmas);
+        return namedJdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = :siteId AND generation = :generation AND lemma IN (:lemmas)",
+                params, (rs, rowNum) -> new LemmaStat(rs.getInt("id"), rs.getString("lemma"), rs.getInt("frequency")));
+    }
+
+    public Postings findPostings(int lemmaId, int expectedSize) {
+        Postings.Builder builder = new Postings.Builder(expectedSize);
+        jdbcTemplate.query("SELECT page_id, `rank` FROM `index` WHERE lemma_id = ? ORDER BY page_id",
+                rs -> {
+                    builder.add(rs.getInt(1), rs.getFloat(2));
+                }, lemmaId);
+        return builder.build();
+    }
+
+    // Posting list леммы, ограниченный страницами-кандидатами (отсортированы по возрастанию)
+    public Postings findPostings(int lemmaId, int[] pageIds) {
+        Postings.Builder builder = new Postings.Builder(pageIds.length);
+        for (int from = 0; from < pageIds.length; from += IN_CHUNK) {
+            List<Integer> chunk = new ArrayList<>(IN_CHUNK);
+            for (int i = from; i < Math.min(pageIds.length, from + IN_CHUNK); i++) {
+                chunk.add(pageIds[i]);
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("lemmaId", lemmaId)
+                    .addValue("pageIds", chunk);
+            namedJdbcTemplate.query("SELECT page_id, `rank` FROM `index` WHERE lemma_id = :lemmaId AND page_id IN (:pageIds) ORDER BY page_id",
+                    params, rs -> {
+                        builder.add(rs.getInt(1), rs.getFloat(2));
+                    });
+        }
+        return builder.build();
+    }
+
+    // Позиции лемм запроса на возвращаемых страницах: page_id -> закодированные позиции каждой леммы
+    public Map<Integer, List<byte[]>> findPositions(Collection<Integer> pageIds, Collection<Integer> lemmaIds) {
+        Map<Integer, List<byte[]>> positions = new HashMap<>();
+        if (pageIds.isEmpty() || lemmaIds.isEmpty()) {
+            return positions;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("pageIds", pageIds)
+                .addValue("lemmaIds", lemmaIds);
+        namedJdbcTemplate.query("SELECT page_id, positions FROM `index` WHERE page_id IN (:pageIds) AND lemma_id IN (:lemmaIds)",
+                params, rs -> {
+                    byte[] encoded = rs.getBytes(2);
+                    if (encoded != null) {
+                        positions.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(encoded);
+                    }
+                });
+        return positions;
+    }
+}
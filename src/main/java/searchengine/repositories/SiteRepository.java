@@ -6,26 +6,39 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 import java.time.LocalDateTime;
-import searchengine.model.Status;
 
 public interface SiteRepository extends JpaRepository<Site, Integer> {
 
-    // Method to delete a Site by its URL
+    // Method to find a Site by URL
+    Site findByUrl(String url);
+
+    // Method to update the status time and statistics counters of a Site (heartbeat during indexing)
     @Modifying
     @Transactional
-    @Query("DELETE FROM Site s WHERE s.url = :url")
-    void deleteByUrl(String url);
+    @Query("UPDATE Site s SET s.statusTime = :statusTime, s.pageCount = :pageCount, s.lemmaCount = :lemmaCount WHERE s.url = :url")
+    void updateProgressByUrl(String url, LocalDateTime statusTime, int pageCount, int lemmaCount);
 
-    // Method to count the number of Sites by URL (useful for tracking deletions)
-    @Query("SELECT COUNT(s) FROM Site s WHERE s.url = :url")
-    int countByUrl(String url);
+    // Method to adjust the statistics counters of a Site outside of a crawl (single page reindex).
+    // The deltas are cast explicitly: otherwise Hibernate casts them to the counters' columnDefinition, which is not a type
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.pageCount = s.pageCount + CAST(:pageDelta AS Integer), " +
+            "s.lemmaCount = s.lemmaCount + CAST(:lemmaDelta AS Integer) WHERE s.url = :url")
+    void adjustCountersByUrl(String url, int pageDelta, int lemmaDelta);
 
-    // Method to find a Site by URL
-    Site findByUrl(String url);
+    // Method to add one node's share to the counters of a Site rebuilt by a shared crawl; matches only while that build is running
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.statusTime = :statusTime, s.pageCount = s.pageCount + CAST(:pageDelta AS Integer), " +
+            "s.lemmaCount = s.lemmaCount + CAST(:lemmaDelta AS Integer) " +
+            "WHERE s.url = :url AND s.buildingGeneration = :generation AND s.status = searchengine.model.Status.INDEXING")
+    int addProgressByUrl(String url, int generation, LocalDateTime statusTime, int pageDelta, int lemmaDelta);
 
-    // Method to update the status of a Site
+    // Method to switch a Site to its rebuilt generation; of several nodes finishing the same shared crawl only the first one matches
     @Modifying
     @Transactional
-    @Query("UPDATE Site s SET s.status = :status, s.statusTime = :statusTime WHERE s.url = :url")
-    void updateStatusByUrl(String url, Status status, LocalDateTime statusTime);
+    @Query("UPDATE Site s SET s.generation = :generation, s.buildingGeneration = NULL, s.status = searchengine.model.Status.INDEXED, " +
+            "s.statusTime = :statusTime, s.pageCount = :pageCount, s.lemmaCount = :lemmaCount " +
+            "WHERE s.id = :id AND s.buildingGeneration = :generation AND s.status = searchengine.model.Status.INDEXING")
+    int activateGeneration(int id, int generation, LocalDateTime statusTime, int pageCount, int lemmaCount);
 }
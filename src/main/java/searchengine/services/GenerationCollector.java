@@ -0,0 +1,85 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.Site;
+import searchengine.repositories.GenerationRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаляет страницы и леммы поколений, которые поиск больше не видит: прежнего после переключения
+ * на новое и брошенных полных переиндексаций. Удаление идёт небольшими пакетами по gcBatchSize строк,
+ * каждый в своей короткой транзакции, чтобы не держать блокировки и не раздувать undo-лог.
+ */
+@Slf4j
+@Component
+public class GenerationCollector {
+
+    private final SiteRepository siteRepository;
+    private final GenerationRepository generationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public GenerationCollector(SiteRepository siteRepository, GenerationRepository generationRepository,
+                               TransactionTemplate transactionTemplate, CrawlerSettings settings) {
+        this.siteRepository = siteRepository;
+        this.generationRepository = generationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = settings.getGcBatchSize();
+        scheduler.scheduleWithFixedDelay(this::collectAll, settings.getGcInterval(),
+                settings.getGcInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    // Внеочередная сборка, например сразу после переключения поколения; выполняется в фоне
+    public void collect() {
+        scheduler.execute(this::collectAll);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void collectAll() {
+        for (Site site : siteRepository.findAll()) {
+            try {
+                collect(site);
+            } catch (Exception e) {
+                log.warn("Ошибка при удалении устаревших поколений сайта {}: {}", site.getUrl(), e.getMessage());
+            }
+        }
+    }
+
+    private void collect(Site site) {
+        int active = site.getGeneration();
+        int building = site.getBuildingGeneration() != null ? site.getBuildingGeneration() : active;
+        int pages = 0;
+        List<Integer> ids;
+        while (!Thread.currentThread().isInterrupted()
+                && !(ids = generationRepository.findStalePageIds(site.getId(), active, building, batchSize)).isEmpty()) {
+            List<Integer> batch = ids;
+            Integer deleted = transactionTemplate.execute(status -> generationRepository.deletePagesWithIndex(batch));
+            pages += deleted != null ? deleted : 0;
+        }
+        // Леммы - после страниц: на них ссылается индекс удалённых страниц
+        int lemmas = 0;
+        while (!Thread.currentThread().isInterrupted()
+                && !(ids = generationRepository.findStaleLemmaIds(site.getId(), active, building, batchSize)).isEmpty()) {
+            List<Integer> batch = ids;
+            Integer deleted = transactionTemplate.execute(status -> generationRepository.deleteLemmas(batch));
+            lemmas += deleted != null ? deleted : 0;
+        }
+        if (pages > 0 || lemmas > 0) {
+            log.info("Для сайта {} удалено страниц устаревших поколений: {}, лемм: {}.", site.getUrl(), pages, lemmas);
+        }
+    }
+}
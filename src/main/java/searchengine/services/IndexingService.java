@@ -1,40 +1,97 @@
 package searchengine.services;
 
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.SitesList;
 import searchengine.model.Site;
 import searchengine.model.Page;
 import searchengine.model.Status;
+import searchengine.repositories.CrawlCheckpointRepository;
+import searchengine.repositories.CrawlCheckpointRepository.SavedPaths;
+import searchengine.repositories.IndexBatchRepository;
+import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.repositories.PageRepository;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import searchengine.services.crawler.CancellationToken;
+import searchengine.services.crawler.CrawlCheckpointer;
+import searchengine.services.crawler.CrawlExecutors;
+import searchengine.services.crawler.CrawlProgress;
+import searchengine.services.crawler.CrawlProgressTracker;
+import searchengine.services.crawler.CrawlQueue;
+import searchengine.services.crawler.FetchResult;
+import searchengine.services.crawler.KnownPages;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.crawler.SharedFrontier;
+import searchengine.services.crawler.SiteCrawler;
+import searchengine.services.crawler.UrlNormalizer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import java.io.IOException;
-import java.net.URL;
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 
+@Slf4j
 @Service
 public class IndexingService {
 
+    private static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+    private static final String INTERRUPTED_BY_RESTART = "Индексация прервана перезапуском приложения";
+    private static final String NOT_INDEXED = "Сайт не индексировался, проиндексированы только отдельные страницы";
+    private static final long SITE_LOCK_POLL_MS = 100;
+
     private final AtomicBoolean isIndexing = new AtomicBoolean(false);
+    // Сайт обходит на узле кто-то один: indexSite или подключённый joinCrawl, иначе оба вели бы одну запись CrawlProgressTracker
+    private final Map<String, ReentrantLock> siteLocks = new ConcurrentHashMap<>();
+    private final Map<String, CancellationToken> joinedCrawls = new ConcurrentHashMap<>();
+    private volatile CancellationToken cancellation = new CancellationToken();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private final SitesList sitesList;
+    private final CrawlerSettings crawlerSettings;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final ForkJoinPool forkJoinPool = new ForkJoinPool();
-
-    public IndexingService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository) {
+    private final LemmaRepository lemmaRepository;
+    private final IndexBatchRepository indexBatchRepository;
+    private final CrawlCheckpointRepository checkpointRepository;
+    private final PageFetcher pageFetcher;
+    private final SitePageProcessor sitePageProcessor;
+    private final PageBatchWriter pageBatchWriter;
+    private final CrawlExecutors crawlExecutors;
+    private final CrawlProgressTracker progressTracker;
+    private final CrawlCheckpointer checkpointer;
+    private final CrawlQueue crawlQueue;
+    private final SearchResultCache searchResultCache;
+    private final GenerationCollector generationCollector;
+
+    public IndexingService(SitesList sitesList, CrawlerSettings crawlerSettings, SiteRepository siteRepository,
+                           PageRepository pageRepository, LemmaRepository lemmaRepository,
+                           IndexBatchRepository indexBatchRepository, CrawlCheckpointRepository checkpointRepository,
+                           PageFetcher pageFetcher, SitePageProcessor sitePageProcessor, PageBatchWriter pageBatchWriter,
+                           CrawlExecutors crawlExecutors, CrawlProgressTracker progressTracker, CrawlCheckpointer checkpointer,
+                           CrawlQueue crawlQueue, SearchResultCache searchResultCache, GenerationCollector generationCollector) {
         this.sitesList = sitesList;
+        this.crawlerSettings = crawlerSettings;
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexBatchRepository = indexBatchRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.pageFetcher = pageFetcher;
+        this.sitePageProcessor = sitePageProcessor;
+        this.pageBatchWriter = pageBatchWriter;
+        this.crawlExecutors = crawlExecutors;
+        this.progressTracker = progressTracker;
+        this.checkpointer = checkpointer;
+        this.crawlQueue = crawlQueue;
+        this.searchResultCache = searchResultCache;
+        this.generationCollector = generationCollector;
     }
 
     public boolean isIndexing() {
@@ -43,189 +100,383 @@ public class IndexingService {
 
     public void startIndexing() {
         if (isIndexing.compareAndSet(false, true)) {
-            System.out.println("[" + LocalDateTime.now() + "] Индексация началась...");
+            log.info("Индексация началась.");
+            CancellationToken token = new CancellationToken();
+            cancellation = token;
             executorService.submit(() -> {
                 try {
-                    performIndexing();
+                    performIndexing(token);
                 } catch (Exception e) {
-                    System.err.println("[" + LocalDateTime.now() + "] Ошибка при индексации: " + e.getMessage());
+                    log.error("Ошибка при индексации", e);
                 } finally {
                     isIndexing.set(false);
-                    System.out.println("[" + LocalDateTime.now() + "] Индексация завершена.");
+                    log.info("Индексация завершена.");
                 }
             });
         } else {
-            System.out.println("[" + LocalDateTime.now() + "] Индексация уже в процессе.");
+            log.info("Индексация уже в процессе.");
         }
     }
 
-    @Transactional
-    private void performIndexing() {
-        for (searchengine.config.Site configSite : sitesList.getSites()) {
-            try {
-                Site site = convertToModelSite(configSite);
-
-                int deletedPages = deletePages(site);
-                int deletedSites = deleteSite(site);
-
-                System.out.println("[" + LocalDateTime.now() + "] Для сайта " + site.getUrl() + " удалено " + deletedPages + " страниц и " + deletedSites + " записей о сайте.");
-
-                site.setStatus(Status.INDEXING);
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-                System.out.println("[" + LocalDateTime.now() + "] Сайт с URL " + site.getUrl() + " начал индексацию.");
-
-                updateSiteStatusTime(site);
-
-                crawlSiteAndSavePages(site);
-
-                System.out.println("[" + LocalDateTime.now() + "] Страницы для сайта " + site.getUrl() + " добавлены в базу данных.");
-
-                site.setStatus(Status.INDEXED);
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-                System.out.println("[" + LocalDateTime.now() + "] Статус сайта " + site.getUrl() + " изменен на INDEXED.");
-            } catch (Exception e) {
-                System.err.println("[" + LocalDateTime.now() + "] Ошибка при индексации сайта " + configSite.getUrl() + ": " + e.getMessage());
-
-                // Обновление статуса на FAILED и сохранение ошибки
-                Site site = convertToModelSite(configSite);
-                site.setStatus(Status.FAILED);
-                site.setStatusTime(LocalDateTime.now());
-                site.setLastError("Ошибка при индексации: " + e.getMessage());
-                siteRepository.save(site);
+    /**
+     * Останавливает текущую индексацию: новые страницы не загружаются, загруженные сохраняются,
+     * сайты получают статус FAILED. isIndexing() остаётся true, пока обход не завершится.
+     * Возвращает false, если индексация не запущена.
+     */
+    public boolean stopIndexing() {
+        if (!isIndexing.get()) {
+            return false;
+        }
+        log.info("Остановка индексации по запросу пользователя.");
+        cancellation.cancel();
+        return true;
+    }
 
-                e.printStackTrace();
+    /**
+     * Индексация, оборванная остановкой приложения, оставила сайт в статусе INDEXING. При запуске такой
+     * сайт получает FAILED, как после ошибки обхода; прерванная полная переиндексация продолжится
+     * с контрольной точки при следующем запуске. Сайт с незаконченной общей очередью распределённого
+     * режима не трогается: его обход продолжают и завершают узлы кластера.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedSites() {
+        for (Site site : siteRepository.findAll()) {
+            if (site.getStatus() != Status.INDEXING) {
+                continue;
+            }
+            if (crawlerSettings.isDistributed() && site.getBuildingGeneration() != null
+                    && crawlQueue.hasOpen(site.getId(), site.getBuildingGeneration())) {
+                continue;
             }
+            site.setStatus(Status.FAILED);
+            site.setStatusTime(LocalDateTime.now());
+            site.setLastError(INTERRUPTED_BY_RESTART);
+            // Счётчики вели страницы строящегося поколения, а поиск по-прежнему отвечает по активному
+            if (site.getBuildingGeneration() != null) {
+                site.setPageCount(pageRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()));
+                site.setLemmaCount(lemmaRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()));
+            }
+            siteRepository.save(site);
+            log.warn("Индексация сайта {} была прервана остановкой приложения, статус изменён на FAILED.", site.getUrl());
         }
     }
 
-    private Site convertToModelSite(searchengine.config.Site configSite) {
-        Site site = new Site();
-        site.setUrl(configSite.getUrl());
-        site.setName(configSite.getName());
-        return site;
+    // Поток запуска индексации не должен удерживать JVM после закрытия контекста
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
     }
 
-    @Transactional
-    private int deletePages(Site site) {
-        int countBeforeDelete = pageRepository.countBySiteUrl(site.getUrl());
-        pageRepository.deleteBySiteUrl(site.getUrl());
-        return countBeforeDelete;
+    // Сайты обходятся параллельно: общее время ограничено самым медленным хостом, а не суммой по всем
+    private void performIndexing(CancellationToken token) {
+        try (ExecutorService siteExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (searchengine.config.Site configSite : sitesList.getSites()) {
+                siteExecutor.submit(() -> indexSite(configSite, token));
+            }
+        }
     }
 
-    @Transactional
-    private int deleteSite(Site site) {
-        int countBeforeDelete = siteRepository.countByUrl(site.getUrl());
-        siteRepository.deleteByUrl(site.getUrl());
-        return countBeforeDelete;
-    }
+    /**
+     * Переиндексация одной страницы сайта из конфигурации. Страница загружается сразу, и её прежняя
+     * версия вместе с индексом и вкладом в частоты лемм заменяется новой в одной транзакции;
+     * остальные страницы сайта не затрагиваются. Запись идёт в активное поколение, которое видит поиск.
+     */
+    public void indexPage(String pageUrl) throws IOException {
+        String url = UrlNormalizer.normalize(pageUrl);
+        searchengine.config.Site configSite = url != null ? findConfigSite(url) : null;
+        if (configSite == null) {
+            throw new IllegalArgumentException("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+        }
+        FetchResult result = pageFetcher.fetch(url);
+        if (!result.isHtml()) {
+            throw new IllegalArgumentException("Страница не является HTML-документом");
+        }
+
+        Site site = siteRepository.findByUrl(configSite.getUrl());
+        if (site == null) {
+            // Строка нужна страницам, но сайт целиком не проиндексирован
+            site = convertToModelSite(configSite);
+            site.setStatus(Status.FAILED);
+            site.setLastError(NOT_INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+        Page page = sitePageProcessor.buildPage(site, site.getGeneration(), result);
+        PageBatchWriter.CounterDelta delta = pageBatchWriter.replacePage(page, sitePageProcessor.collectLemmas(page, result));
 
-    @Transactional
-    private void updateSiteStatusTime(Site site) {
-        siteRepository.updateStatusByUrl(site.getUrl(), site.getStatus(), LocalDateTime.now());
+        // Во время обхода сайта счётчики ведёт CrawlProgressTracker
+        if (progressTracker.get(site.getUrl()) == null) {
+            siteRepository.adjustCountersByUrl(site.getUrl(), delta.pages(), delta.lemmas());
+        }
+        log.info("Страница {} переиндексирована (код ответа {}).", url, result.statusCode());
     }
 
-    private void crawlSiteAndSavePages(Site site) {
-        Set<String> visitedUrls = new HashSet<>();
-        crawlPage(site.getUrl(), visitedUrls, site);
+    // url - нормализованный; хост сравнивается точно, иначе запрос ушёл бы на чужой хост вида site.ru.evil.com
+    private searchengine.config.Site findConfigSite(String url) {
+        for (searchengine.config.Site configSite : sitesList.getSites()) {
+            if (UrlNormalizer.isWithinSite(url, UrlNormalizer.normalize(configSite.getUrl()))) {
+                return configSite;
+            }
+        }
+        return null;
     }
 
-    private void crawlPage(String url, Set<String> visitedUrls, Site site) {
-        if (visitedUrls.contains(url)) {
+    /**
+     * Полная индексация обходит сайт заново в новое поколение (site.buildingGeneration), пока поиск
+     * продолжает отвечать по активному. После успешного обхода поколения переключаются одним UPDATE
+     * строки сайта, а прежнее удаляет GenerationCollector; упавшая или остановленная сборка активное
+     * поколение не затрагивает. Инкрементальная (crawler.incremental) обновляет активное поколение на месте:
+     * страницы запрашиваются условным GET, перезаписываются только изменившиеся, а исчезнувшие удаляются
+     * после обхода. Контрольные точки (crawl_frontier) пишет только полная переиндексация: если она
+     * прервалась, обход продолжается с точки в то же строящееся поколение, и сохранённые в нём страницы
+     * не загружаются повторно. Прерванная инкрементальная просто начинается заново: в её поколении лежат
+     * и страницы, которые она ещё не успела проверить.
+     * В распределённом режиме (crawler.distributed) очередь обхода общая для всех узлов (crawl_queue):
+     * сборка с незаконченной очередью продолжается, иначе начинается новая; инкрементального режима нет.
+     */
+    private void indexSite(searchengine.config.Site configSite, CancellationToken token) {
+        if (token.isCancelled()) {
+            return;  // Остановлено до начала обхода сайта: прежний индекс не трогаем
+        }
+        ReentrantLock siteLock;
+        try {
+            siteLock = lockSite(configSite.getUrl());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return;
         }
-
-        // Создаем новую задачу для обработки страницы
-        forkJoinPool.submit(new RecursiveTask<Void>() {
-            @Override
-            protected Void compute() {
-                try {
-                    Document doc = Jsoup.connect(url).get();
-                    visitedUrls.add(url);
-
-                    String contentType = Jsoup.connect(url).execute().contentType();
-                    if (contentType == null || contentType.startsWith("text/") || contentType.startsWith("application/xml") || contentType.startsWith("application/*+xml")) {
-                        Page page = new Page();
-                        page.setSite(site);
-                        page.setPath(url);
-                        page.setCode(200);
-                        page.setContent(doc.html());
-                        pageRepository.save(page);
-                        System.out.println("[" + LocalDateTime.now() + "] Страница " + url + " сохранена.");
+        try {
+            Site site = siteRepository.findByUrl(configSite.getUrl());
+            boolean distributed = crawlerSettings.isDistributed();
+            Map<String, Integer> checkpoint = site != null && !distributed && site.getBuildingGeneration() != null
+                    ? checkpointRepository.loadFrontier(site.getId()) : Map.of();
+            SavedPaths savedPaths = SavedPaths.empty();
+            KnownPages knownPages = KnownPages.empty();
+            if (!checkpoint.isEmpty()) {
+                site.setName(configSite.getName());
+                site.setLastError(null);
+                savedPaths = checkpointRepository.findSavedPaths(site.getId(), site.getBuildingGeneration());
+                log.info("Продолжение прерванного обхода сайта {}: сохранено {} страниц, в очереди {} адресов.", site.getUrl(), savedPaths.size(), checkpoint.size());
+            } else if (distributed && site != null && site.getBuildingGeneration() != null
+                    && crawlQueue.hasOpen(site.getId(), site.getBuildingGeneration())) {
+                site.setName(configSite.getName());
+                site.setLastError(null);
+                // Узлы прибавляют к счётчикам сайта свои приращения, отсчёт - от уже записанного в поколение
+                site.setPageCount(pageRepository.countBySiteIdAndGeneration(site.getId(), site.getBuildingGeneration()));
+                site.setLemmaCount(lemmaRepository.countBySiteIdAndGeneration(site.getId(), site.getBuildingGeneration()));
+                log.info("Продолжение распределённого обхода сайта {} по общей очереди поколения {}.", site.getUrl(), site.getBuildingGeneration());
+            } else if (!distributed && site != null && crawlerSettings.isIncremental() && site.getBuildingGeneration() == null) {
+                site.setName(configSite.getName());
+                site.setLastError(null);
+                knownPages = new KnownPages(indexBatchRepository.findKnownPages(site.getId(), site.getGeneration()));
+                log.info("Инкрементальная переиндексация сайта {}: сохранено {} страниц.", site.getUrl(), knownPages.size());
+            } else {
+                if (site == null) {
+                    site = convertToModelSite(configSite);
+                } else {
+                    site.setName(configSite.getName());
+                    site.setLastError(null);
+                    if (distributed) {
+                        crawlQueue.clear(site.getId());  // Очередь брошенной сборки
                     } else {
-                        System.out.println("[" + LocalDateTime.now() + "] Пропущена страница " + url + " с неподдерживаемым типом содержимого.");
+                        checkpointRepository.deleteFrontier(site.getId());  // Точка не от этой сборки
                     }
+                }
+                // Номер выше всех прежних: страницы брошенной сборки не смешиваются с новыми
+                int lastGeneration = site.getBuildingGeneration() != null ? site.getBuildingGeneration() : 0;
+                site.setBuildingGeneration(Math.max(site.getGeneration(), lastGeneration) + 1);
+                if (distributed) {
+                    site.setPageCount(0);
+                    site.setLemmaCount(0);
+                }
+                log.info("Полная переиндексация сайта {} в поколение {}, поиск до её завершения использует поколение {}.",
+                        site.getUrl(), site.getBuildingGeneration(), site.getGeneration());
+            }
 
-                    updateSiteStatusTime(site);
+            site.setStatus(Status.INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+            log.info("Сайт с URL {} начал индексацию.", site.getUrl());
 
-                    // Обрабатываем все ссылки на текущей странице
-                    for (Element link : doc.select("a[href]")) {
-                        String nextUrl = link.absUrl("href");
-                        if (!nextUrl.isEmpty() && nextUrl.startsWith(site.getUrl())) {
-                            // Для каждой найденной ссылки создаем новую задачу
-                            crawlPage(nextUrl, visitedUrls, site);
-                        }
-                    }
+            int generation = writeGeneration(site);
+            CrawlProgress progress = crawlSiteAndSavePages(site, generation, configSite, knownPages, savedPaths, checkpoint, token);
+            if (token.isCancelled()) {
+                throw new CancellationException(STOPPED_BY_USER);
+            }
 
-                    // Обрабатываем медиафайлы (изображения, CSS, JS)
-                    processMediaFiles(doc, site);
-                } catch (IOException e) {
-                    System.err.println("[" + LocalDateTime.now() + "] Ошибка при обработке страницы " + url + ": " + e.getMessage());
-                }
-                return null;
+            log.info("Страницы для сайта {} добавлены в базу данных.", site.getUrl());
+            if (distributed) {
+                finishSharedBuild(site, generation);
+                return;
             }
-        });
-    }
 
-    private void processMediaFiles(Document doc, Site site) {
-        for (Element img : doc.select("img[src]")) {
-            String imageUrl = img.absUrl("src");
-            if (!imageUrl.isEmpty()) {
-                saveMediaFile(imageUrl, site, "image");
+            // Переключение поколения - тот же UPDATE строки сайта, что и смена статуса
+            boolean swapped = site.getBuildingGeneration() != null;
+            if (swapped) {
+                site.setGeneration(generation);
+                site.setBuildingGeneration(null);
+            }
+            site.setStatus(Status.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            site.setPageCount(progress.getPagesSaved());
+            site.setLemmaCount(progress.getLemmaCount());
+            siteRepository.save(site);
+            log.info("Статус сайта {} изменен на INDEXED.", site.getUrl());
+            // Инкрементальный обход писал в активное поколение, не сбрасывая кэш на каждом пакете
+            searchResultCache.invalidateSite(site.getUrl());
+            if (swapped) {
+                generationCollector.collect();
+                log.info("Сайт {} переключён на поколение {}.", site.getUrl(), generation);
+            }
+        } catch (Exception e) {
+            if (token.isCancelled()) {
+                log.info("Индексация сайта {} остановлена.", configSite.getUrl());
+            } else {
+                log.error("Ошибка при индексации сайта {}", configSite.getUrl(), e);
             }
-        }
 
-        for (Element link : doc.select("link[href]")) {
-            String cssUrl = link.absUrl("href");
-            if (!cssUrl.isEmpty()) {
-                saveMediaFile(cssUrl, site, "css");
+            // Обновление статуса на FAILED и сохранение ошибки (запись о сайте к этому моменту уже может существовать)
+            Site site = siteRepository.findByUrl(configSite.getUrl());
+            if (site == null) {
+                site = convertToModelSite(configSite);
+            }
+            site.setStatus(Status.FAILED);
+            site.setStatusTime(LocalDateTime.now());
+            site.setLastError(token.isCancelled() ? STOPPED_BY_USER : "Ошибка при индексации: " + e.getMessage());
+            // Счётчики вели страницы строящегося поколения, а поиск по-прежнему отвечает по активному
+            if (site.getId() != null && site.getBuildingGeneration() != null) {
+                site.setPageCount(pageRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()));
+                site.setLemmaCount(lemmaRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()));
             }
+            siteRepository.save(site);
+            searchResultCache.invalidateSite(site.getUrl());
+        } finally {
+            siteLock.unlock();
         }
+    }
 
-        for (Element script : doc.select("script[src]")) {
-            String jsUrl = script.absUrl("src");
-            if (!jsUrl.isEmpty()) {
-                saveMediaFile(jsUrl, site, "js");
+    // Подключённый к общей очереди обход сайта останавливается: его адреса вернутся в очередь, и их продолжит indexSite
+    private ReentrantLock lockSite(String url) throws InterruptedException {
+        ReentrantLock lock = siteLocks.computeIfAbsent(url, key -> new ReentrantLock());
+        while (!lock.tryLock(SITE_LOCK_POLL_MS, TimeUnit.MILLISECONDS)) {
+            CancellationToken joined = joinedCrawls.get(url);
+            if (joined != null && !joined.isCancelled()) {
+                log.info("Сайт {}: подключённый обход по общей очереди останавливается перед индексацией на этом узле.", url);
+                joined.cancel();
             }
         }
+        return lock;
     }
 
-    private void saveMediaFile(String fileUrl, Site site, String fileType) {
+    /**
+     * Распределённый режим: подключает узел к обходу сайта, который начал другой узел, и разбирает общую
+     * очередь вместе с ним. Статус сайта при ошибке не меняется: им распоряжается узел, начавший обход,
+     * а строящееся поколение переключит тот узел, который закончит последним. Если сайт уже индексируется
+     * на этом узле, метод сразу возвращает управление; начатая здесь индексация сайта останавливает подключённый обход.
+     */
+    public void joinCrawl(Site site, searchengine.config.Site configSite, CancellationToken token) {
+        ReentrantLock siteLock = siteLocks.computeIfAbsent(site.getUrl(), key -> new ReentrantLock());
+        if (!siteLock.tryLock()) {
+            return;
+        }
+        joinedCrawls.put(site.getUrl(), token);
+        int generation = site.getBuildingGeneration();
         try {
-            if (isValidMediaFile(fileUrl)) {
-                Page mediaPage = new Page();
-                mediaPage.setSite(site);
-                mediaPage.setPath(fileUrl);
-                mediaPage.setCode(200);
-                mediaPage.setContent("");
-                pageRepository.save(mediaPage);
-
-                System.out.println("[" + LocalDateTime.now() + "] " + fileType.toUpperCase() + " файл " + fileUrl + " сохранен.");
+            crawlSiteAndSavePages(site, generation, configSite, KnownPages.empty(), SavedPaths.empty(), Map.of(), token);
+            if (!token.isCancelled()) {
+                finishSharedBuild(site, generation);
             }
         } catch (Exception e) {
-            System.err.println("[" + LocalDateTime.now() + "] Ошибка при сохранении " + fileType + " файла " + fileUrl + ": " + e.getMessage());
+            log.warn("Ошибка при обходе сайта {} по общей очереди: {}", site.getUrl(), e.getMessage());
+        } finally {
+            joinedCrawls.remove(site.getUrl(), token);
+            siteLock.unlock();
+        }
+    }
+
+    // Узлы заканчивают общий обход независимо; условный UPDATE переключает поколение ровно один раз
+    private void finishSharedBuild(Site site, int generation) throws IOException {
+        int pages = pageRepository.countBySiteIdAndGeneration(site.getId(), generation);
+        if (pages == 0) {
+            throw new IOException("главная страница сайта не доступна");
+        }
+        int lemmas = lemmaRepository.countBySiteIdAndGeneration(site.getId(), generation);
+        if (siteRepository.activateGeneration(site.getId(), generation, LocalDateTime.now(), pages, lemmas) == 0) {
+            log.info("Сайт {}: поколение {} уже переключено другим узлом.", site.getUrl(), generation);
+            return;
         }
+        crawlQueue.clear(site.getId());
+        searchResultCache.invalidateSite(site.getUrl());
+        generationCollector.collect();
+        log.info("Сайт {} переключён на поколение {} (страниц {}).", site.getUrl(), generation, pages);
     }
 
-    private boolean isValidMediaFile(String fileUrl) {
+    private Site convertToModelSite(searchengine.config.Site configSite) {
+        Site site = new Site();
+        site.setUrl(configSite.getUrl());
+        site.setName(configSite.getName());
+        return site;
+    }
+
+    // Обход пишет в незавершённую полную переиндексацию, если она есть, иначе в активное поколение
+    private int writeGeneration(Site site) {
+        return site.getBuildingGeneration() != null ? site.getBuildingGeneration() : site.getGeneration();
+    }
+
+    // Возвращает итоговые счётчики обхода: они уже записаны в site, но сущность site у вызывающего устарела
+    // savedPaths и checkpoint непусты, если продолжается прерванный обход
+    private CrawlProgress crawlSiteAndSavePages(Site site, int generation, searchengine.config.Site configSite, KnownPages knownPages,
+                                                SavedPaths savedPaths, Map<String, Integer> checkpoint,
+                                                CancellationToken token) throws Exception {
+        SharedFrontier shared = crawlerSettings.isDistributed() ? crawlQueue.open(site.getId(), generation) : null;
+        CrawlProgress started = shared != null ? progressTracker.startShared(site.getUrl(), site.getId(), generation)
+                : progressTracker.start(site.getUrl(), site.getId(), generation, knownPages.size() + savedPaths.size());
+        SiteCrawler crawler = new SiteCrawler(site.getUrl(), crawlerSettings.limitsFor(configSite),
+                sitePageProcessor.forSite(site, generation, knownPages), crawlExecutors, started, token);
+        if (!checkpoint.isEmpty()) {
+            crawler.resume(savedPaths.pages(), savedPaths.media(), checkpoint);
+        }
+        // Точки ведёт только полная переиндексация без общей очереди: та и так в базе
+        boolean checkpointed = shared == null && site.getBuildingGeneration() != null;
+        if (shared != null) {
+            crawler.useSharedFrontier(shared);
+        } else if (checkpointed) {
+            checkpointer.register(site.getId(), crawler);
+        }
+        CrawlProgress progress;
         try {
-            URL url = new URL(fileUrl);
-            String fileType = url.openConnection().getContentType();
-            return fileType != null && (fileType.startsWith("image/") || fileType.startsWith("text/") || fileType.startsWith("application/"));
-        } catch (IOException e) {
-            System.err.println("[" + LocalDateTime.now() + "] Ошибка при проверке типа медиафайла " + fileUrl + ": " + e.getMessage());
-            return false;
+            crawler.crawl();
+            pageBatchWriter.flush();  // И после остановки: загруженные страницы не теряются
+            if (shared != null) {
+                crawlQueue.close(shared, token.isCancelled());
+                shared = null;
+            } else if (token.isCancelled()) {
+                if (checkpointed) {
+                    checkpointer.checkpoint(site.getId(), crawler);  // Следующий запуск продолжит с этого места
+                }
+            } else {
+                checkpointer.clear(site.getId());
+            }
+            // Удалять недостигнутые страницы можно только после полного обхода
+            if (crawler.getRootError() == null && !token.isCancelled()) {
+                List<Integer> vanished = knownPages.unseenIds();
+                if (!vanished.isEmpty()) {
+                    int deleted = pageBatchWriter.deletePages(site.getUrl(), generation, vanished);
+                    log.info("Удалено исчезнувших страниц сайта {}: {}.", site.getUrl(), deleted);
+                }
+            }
+        } finally {
+            if (shared != null) {
+                crawlQueue.close(shared, true);  // Обход прерван ошибкой: аренды сразу достаются другим узлам
+            }
+            checkpointer.unregister(site.getId());
+            progress = progressTracker.finish(site.getUrl());
+        }
+
+        // Без главной страницы сайт не может считаться проиндексированным
+        if (crawler.getRootError() != null) {
+            throw new IOException("главная страница сайта не доступна (" + crawler.getRootError().getMessage() + ")");
         }
+        return progress;
     }
 }
@@ -0,0 +1,75 @@
+package searchengine.services;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Вхождения леммы на странице: общее число и начала первых MAX_POSITIONS вхождений в тексте страницы.
+ * Позиции хранятся в индексе как разности, закодированные varint: сниппет строится по ним без разбора страницы.
+ */
+public class LemmaOccurrences {
+
+    public static final int MAX_POSITIONS = 32;
+
+    private int count;
+    private int[] positions = new int[4];
+    private int positionCount;
+
+    // Вхождение в тексте страницы с известной позицией
+    public void add(int start) {
+        count++;
+        if (positionCount < MAX_POSITIONS) {
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, Math.min(MAX_POSITIONS, positionCount * 2));
+            }
+            positions[positionCount++] = start;
+        }
+    }
+
+    // Вхождение вне текста страницы (например, в заголовке): учитывается только в rank
+    public void increment() {
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public byte[] encodePositions() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(positionCount * 2);
+        int previous = 0;
+        for (int i = 0; i < positionCount; i++) {
+            int delta = positions[i] - previous;
+            previous = positions[i];
+            while ((delta & ~0x7F) != 0) {
+                out.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decodePositions(byte[] encoded) {
+        if (encoded == null) {
+            return new int[0];
+        }
+        int[] result = new int[encoded.length];
+        int count = 0;
+        int previous = 0;
+        int value = 0;
+        int shift = 0;
+        for (byte b : encoded) {
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += value;
+            result[count++] = previous;
+            value = 0;
+            shift = 0;
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,158 @@
+package searchengine.services;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Лемматизация текста страниц и запросов. Слова выделяются одним проходом по тексту без регулярных
+ * выражений, нормальная форма берётся из словарей LuceneMorphology (русский и английский),
+ * служебные части речи отбрасываются. Результаты разбора слов кэшируются: словарь сайта ограничен,
+ * и повторные слова не обращаются к морфологии.
+ */
+@Service
+public class LemmaService {
+
+    private static final Set<String> RUSSIAN_FUNCTION_WORDS = Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ");
+    private static final Set<String> ENGLISH_FUNCTION_WORDS = Set.of("CONJ", "PREP", "ARTICLE", "PART", "INT");
+    private static final String NO_LEMMA = "";  // Отметка в кэше для служебных и неизвестных слов
+    private static final int MAX_CACHED_WORDS = 500_000;
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private final LuceneMorphology russianMorphology;
+    private final LuceneMorphology englishMorphology;
+    private final ConcurrentHashMap<String, String> lemmaCache = new ConcurrentHashMap<>();
+
+    public LemmaService() throws IOException {
+        this.russianMorphology = new RussianLuceneMorphology();
+        this.englishMorphology = new EnglishLuceneMorphology();
+    }
+
+    @FunctionalInterface
+    public interface WordConsumer {
+        // start и end - границы слова в исходном тексте
+        void accept(String word, int start, int end);
+    }
+
+    // Леммы текста и число их вхождений
+    public Map<String, Integer> collectLemmas(String text) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        forEachWord(text, (word, start, end) -> {
+            String lemma = lemmaOf(word);
+            if (lemma != null) {
+                lemmas.merge(lemma, 1, Integer::sum);
+            }
+        });
+        return lemmas;
+    }
+
+    /**
+     * Леммы страницы для индекса: в тексте запоминаются позиции вхождений (для сниппетов),
+     * вхождения в заголовке только увеличивают rank.
+     */
+    public Map<String, LemmaOccurrences> collectOccurrences(String title, String text) {
+        Map<String, LemmaOccurrences> lemmas = new HashMap<>();
+        forEachWord(text, (word, start, end) -> {
+            String lemma = lemmaOf(word);
+            if (lemma != null) {
+                lemmas.computeIfAbsent(lemma, key -> new LemmaOccurrences()).add(start);
+            }
+        });
+        forEachWord(title, (word, start, end) -> {
+            String lemma = lemmaOf(word);
+            if (lemma != null) {
+                lemmas.computeIfAbsent(lemma, key -> new LemmaOccurrences()).increment();
+            }
+        });
+        return lemmas;
+    }
+
+    /**
+     * Нормальная форма слова в нижнем регистре или null для служебных и нераспознанных слов.
+     */
+    public String lemmaOf(String word) {
+        String cached = lemmaCache.get(word);
+        if (cached == null) {
+            cached = resolveLemma(word);
+            if (lemmaCache.size() < MAX_CACHED_WORDS) {
+                lemmaCache.put(word, cached);
+            }
+        }
+        return cached.isEmpty() ? null : cached;
+    }
+
+    /**
+     * Выделяет слова одного алфавита (кириллица или латиница) и передаёт их в нижнем регистре,
+     * «ё» заменяется на «е». Слова из смешанных алфавитов, с цифрами и слишком длинные пропускаются.
+     */
+    public void forEachWord(String text, WordConsumer consumer) {
+        StringBuilder word = new StringBuilder(32);
+        int start = -1;
+        boolean cyrillic = false;
+        boolean mixed = false;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? Character.toLowerCase(text.charAt(i)) : ' ';
+            boolean isCyrillic = (c >= 'а' && c <= 'я') || c == 'ё';
+            boolean isLatin = c >= 'a' && c <= 'z';
+            if (isCyrillic || isLatin) {
+                if (start < 0) {
+                    start = i;
+                    cyrillic = isCyrillic;
+                    mixed = false;
+                    word.setLength(0);
+                } else if (cyrillic != isCyrillic) {
+                    mixed = true;
+                }
+                word.append(c == 'ё' ? 'е' : c);
+                continue;
+            }
+            boolean digit = c >= '0' && c <= '9';
+            if (start >= 0) {
+                if (digit) {
+                    mixed = true;
+                    continue;
+                }
+                if (!mixed && word.length() <= MAX_WORD_LENGTH) {
+                    consumer.accept(word.toString(), start, i);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private String resolveLemma(String word) {
+        LuceneMorphology morphology = word.charAt(0) >= 'a' && word.charAt(0) <= 'z' ? englishMorphology : russianMorphology;
+        Set<String> functionWords = morphology == englishMorphology ? ENGLISH_FUNCTION_WORDS : RUSSIAN_FUNCTION_WORDS;
+        try {
+            if (!morphology.checkString(word)) {
+                return NO_LEMMA;
+            }
+            for (String info : morphology.getMorphInfo(word)) {
+                if (isFunctionWord(info, functionWords)) {
+                    return NO_LEMMA;
+                }
+            }
+            List<String> normalForms = morphology.getNormalForms(word);
+            return normalForms.isEmpty() ? NO_LEMMA : normalForms.get(0);
+        } catch (RuntimeException e) {
+            // Морфология бросает исключения на словах, которых нет в словаре
+            return NO_LEMMA;
+        }
+    }
+
+    private boolean isFunctionWord(String morphInfo, Set<String> functionWords) {
+        // Формат: "слово|код ЧАСТЬ_РЕЧИ признаки"
+        int bar = morphInfo.indexOf('|');
+        String[] parts = morphInfo.substring(bar + 1).split(" ");
+        return parts.length > 1 && functionWords.contains(parts[1]);
+    }
+}
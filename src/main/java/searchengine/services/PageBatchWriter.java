@@ -0,0 +1,269 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.Page;
+import searchengine.repositories.IndexBatchRepository;
+import searchengine.repositories.IndexBatchRepository.DeletedRows;
+import searchengine.repositories.IndexBatchRepository.IndexRow;
+import searchengine.services.crawler.CrawlMetrics;
+import searchengine.services.crawler.CrawlProgressTracker;
+import searchengine.services.crawler.UrlNormalizer;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Буфер записи страниц. Страницы накапливаются и сохраняются одним пакетом JDBC в транзакции,
+ * когда набирается writeBatchSize страниц или проходит writeFlushInterval. С rewriteBatchedStatements
+ * это многострочный INSERT вместо отдельного запроса на каждую страницу. В той же транзакции пакетом обновляются леммы
+ * и записывается индекс страниц. Новая версия изменившейся страницы заменяет старую в той же
+ * транзакции: поиск видит либо старую страницу с её леммами, либо новую. Леммы и выборки ведутся
+ * в поколении страницы. Кэш выдачи пакеты обхода не сбрасывают: это делает обход один раз в конце;
+ * сбрасывают только точечные replacePage и deletePages.
+ */
+@Slf4j
+@Component
+public class PageBatchWriter {
+
+    private final IndexBatchRepository indexBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchResultCache searchResultCache;
+    private final CrawlProgressTracker progressTracker;
+    private final CrawlMetrics metrics;
+    private final int batchSize;
+
+    private final List<PageRecord> buffer = new ArrayList<>();
+    private final ReadWriteLock writes = new ReentrantReadWriteLock();  // read - идущая запись, write - ожидание всех записей
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    public PageBatchWriter(IndexBatchRepository indexBatchRepository,
+                           TransactionTemplate transactionTemplate, SearchResultCache searchResultCache,
+                           CrawlProgressTracker progressTracker, CrawlMetrics metrics, CrawlerSettings settings) {
+        this.indexBatchRepository = indexBatchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.searchResultCache = searchResultCache;
+        this.progressTracker = progressTracker;
+        this.metrics = metrics;
+        this.batchSize = settings.getWriteBatchSize();
+        flusher.scheduleWithFixedDelay(this::flushBuffer, settings.getWriteFlushInterval(),
+                settings.getWriteFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    // Страница и вхождения её лемм; для медиафайлов и страниц с ошибкой леммы пустые.
+    // replacedPageId - прежняя версия страницы, которая удаляется вместе с записью новой, или 0
+    private record PageRecord(Page page, Map<String, LemmaOccurrences> lemmas, int replacedPageId) {
+    }
+
+    // Леммы пишутся отдельно для каждого поколения сайта
+    private record SiteGeneration(int siteId, String siteUrl, int generation) {
+
+        static SiteGeneration of(Page page) {
+            return new SiteGeneration(page.getSite().getId(), page.getSite().getUrl(), page.getGeneration());
+        }
+    }
+
+    // Изменение числа страниц и лемм поколения сайта
+    public record CounterDelta(int pages, int lemmas) {
+    }
+
+    public void add(Page page) {
+        add(page, Map.of());
+    }
+
+    public void add(Page page, Map<String, LemmaOccurrences> lemmas) {
+        add(page, lemmas, 0);
+    }
+
+    public void add(Page page, Map<String, LemmaOccurrences> lemmas, int replacedPageId) {
+        List<PageRecord> batch = null;
+        synchronized (buffer) {
+            buffer.add(new PageRecord(page, lemmas, replacedPageId));
+            if (buffer.size() >= batchSize) {
+                batch = drain();
+            }
+        }
+        if (batch != null) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Записывает буфер и дожидается записей, начатых другими потоками: после возврата все страницы,
+     * переданные в add() до вызова, зафиксированы в базе. Пакет захватывает read-блокировку ещё под монитором
+     * буфера, поэтому взятый из буфера, но не записанный пакет flush() не пропустит.
+     */
+    public void flush() {
+        flushBuffer();
+        writes.writeLock().lock();
+        writes.writeLock().unlock();
+    }
+
+    /**
+     * Сразу записывает страницу, в той же транзакции удаляя все её прежние версии вместе с индексом
+     * (под обоими написаниями адреса, /docs и /docs/, как их считает одной страницей обход)
+     * и вкладом в частоты лемм. Возвращает изменение числа страниц и лемм сайта.
+     */
+    public CounterDelta replacePage(Page page, Map<String, LemmaOccurrences> lemmas) {
+        String siteUrl = page.getSite().getUrl();
+        writes.readLock().lock();
+        try {
+            CounterDelta delta = transactionTemplate.execute(status -> {
+                List<Integer> previous = indexBatchRepository.findPageIdsForUpdate(page.getSite().getId(), page.getGeneration(),
+                        UrlNormalizer.spellings(page.getPath()));
+                DeletedRows deleted = previous.isEmpty() ? new DeletedRows(0, 0) : indexBatchRepository.deletePages(previous);
+                int added = writeBatch(List.of(new PageRecord(page, lemmas, 0))).getOrDefault(SiteGeneration.of(page), 0);
+                return new CounterDelta(1 - deleted.pages(), added - deleted.lemmas());
+            });
+            progressTracker.saved(siteUrl, page.getGeneration(), delta.pages(), delta.lemmas());
+            return delta;
+        } finally {
+            searchResultCache.invalidateSite(siteUrl);
+            writes.readLock().unlock();
+        }
+    }
+
+    // Удаляет страницы поколения сайта вместе с их вкладом в частоты лемм, сразу, без буфера
+    public int deletePages(String siteUrl, int generation, List<Integer> pageIds) {
+        int deleted = 0;
+        int deletedLemmas = 0;
+        writes.readLock().lock();
+        try {
+            for (int from = 0; from < pageIds.size(); from += batchSize) {
+                List<Integer> chunk = pageIds.subList(from, Math.min(pageIds.size(), from + batchSize));
+                DeletedRows chunkDeleted = transactionTemplate.execute(status -> indexBatchRepository.deletePages(chunk));
+                if (chunkDeleted != null) {
+                    deleted += chunkDeleted.pages();
+                    deletedLemmas += chunkDeleted.lemmas();
+                }
+            }
+        } finally {
+            progressTracker.saved(siteUrl, generation, -deleted, -deletedLemmas);
+            searchResultCache.invalidateSite(siteUrl);
+            writes.readLock().unlock();
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private void flushBuffer() {
+        List<PageRecord> batch;
+        synchronized (buffer) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    // Вызывается под монитором буфера; непустой пакет уходит с захваченной read-блокировкой, её отпускает write()
+    private List<PageRecord> drain() {
+        if (buffer.isEmpty()) {
+            return List.of();
+        }
+        List<PageRecord> batch = new ArrayList<>(buffer);
+        buffer.clear();
+        writes.readLock().lock();
+        return batch;
+    }
+
+    // Read-блокировку пакета взял drain() в том же потоке
+    private void write(List<PageRecord> batch) {
+        try {
+            Timer.Sample sample = metrics.startTimer();
+            Map<SiteGeneration, Integer> lemmaDeltas;
+            try {
+                lemmaDeltas = transactionTemplate.execute(status -> writeBatch(batch));
+            } catch (Exception e) {
+                metrics.written(sample, batch.size(), false);
+                throw e;
+            }
+            metrics.written(sample, batch.size(), true);
+            countSaved(batch, lemmaDeltas);
+            log.debug("Сохранено страниц: {}.", batch.size());
+        } catch (Exception e) {
+            // Одна некорректная страница не должна терять весь пакет: сохраняем по одной
+            log.warn("Ошибка пакетной записи страниц: {}. Сохранение по одной.", e.getMessage());
+            for (PageRecord record : batch) {
+                try {
+                    record.page().setId(0);  // Идентификатор из откатившейся транзакции не использовался
+                    countSaved(List.of(record), transactionTemplate.execute(status -> writeBatch(List.of(record))));
+                } catch (Exception pageError) {
+                    metrics.error("db_write");
+                    log.error("Ошибка при сохранении страницы {}: {}", record.page().getPath(), pageError.getMessage());
+                }
+            }
+        } finally {
+            writes.readLock().unlock();
+        }
+    }
+
+    // Счётчики для статистики меняются только после фиксации транзакции; замена страницы число страниц не меняет
+    private void countSaved(List<PageRecord> saved, Map<SiteGeneration, Integer> lemmaDeltas) {
+        Map<SiteGeneration, Integer> pageDeltas = new HashMap<>();
+        for (PageRecord record : saved) {
+            pageDeltas.merge(SiteGeneration.of(record.page()), record.replacedPageId() != 0 ? 0 : 1, Integer::sum);
+        }
+        pageDeltas.forEach((key, pages) -> progressTracker.saved(key.siteUrl(), key.generation(), pages,
+                lemmaDeltas != null ? lemmaDeltas.getOrDefault(key, 0) : 0));
+    }
+
+    // Возвращает изменение числа лемм по поколениям сайтов пакета: добавленные минус удалённые с заменёнными страницами
+    private Map<SiteGeneration, Integer> writeBatch(List<PageRecord> batch) {
+        List<Page> pages = new ArrayList<>(batch.size());
+        Map<SiteGeneration, List<Integer>> replaced = new HashMap<>();
+        for (PageRecord record : batch) {
+            pages.add(record.page());
+            if (record.replacedPageId() != 0) {
+                replaced.computeIfAbsent(SiteGeneration.of(record.page()), k -> new ArrayList<>()).add(record.replacedPageId());
+            }
+        }
+        Map<SiteGeneration, Integer> lemmaDeltas = new HashMap<>();
+        replaced.forEach((key, pageIds) -> lemmaDeltas.put(key, -indexBatchRepository.deletePages(pageIds).lemmas()));
+        indexBatchRepository.insertPages(pages);  // Строкам индекса нужны id вставленных страниц
+
+        // Frequency леммы - число страниц сайта, где она встречается: +1 за каждую страницу пакета
+        Map<SiteGeneration, Map<String, Integer>> pageCountsBySite = new HashMap<>();
+        for (PageRecord record : batch) {
+            SiteGeneration key = SiteGeneration.of(record.page());
+            Map<String, Integer> siteCounts = pageCountsBySite.computeIfAbsent(key, k -> new HashMap<>());
+            for (String lemma : record.lemmas().keySet()) {
+                siteCounts.merge(lemma, 1, Integer::sum);
+            }
+        }
+
+        List<IndexRow> rows = new ArrayList<>();
+        for (Map.Entry<SiteGeneration, Map<String, Integer>> site : pageCountsBySite.entrySet()) {
+            if (site.getValue().isEmpty()) {
+                continue;
+            }
+            SiteGeneration key = site.getKey();
+            lemmaDeltas.merge(key, indexBatchRepository.upsertLemmas(key.siteId(), key.generation(), site.getValue()), Integer::sum);
+            Map<String, Integer> lemmaIds = indexBatchRepository.findLemmaIds(key.siteId(), key.generation(), site.getValue().keySet());
+            for (PageRecord record : batch) {
+                if (record.page().getSite().getId() != key.siteId() || record.page().getGeneration() != key.generation()) {
+                    continue;
+                }
+                record.lemmas().forEach((lemma, occurrences) -> rows.add(new IndexRow(record.page().getId(),
+                        lemmaIds.get(lemma), occurrences.getCount(), occurrences.encodePositions())));
+            }
+        }
+        if (!rows.isEmpty()) {
+            indexBatchRepository.insertIndexes(rows);
+        }
+        return lemmaDeltas;
+    }
+}
@@ -0,0 +1,89 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.CrawlerSettings.ContentStorage;
+import searchengine.model.Page;
+import searchengine.repositories.PageRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранение HTML страниц по настройке crawler.content-storage: как есть в content, сжатым Deflate
+ * (уровень BEST_SPEED) в content_compressed или не хранить вовсе - для выдачи достаточно заголовка
+ * и текста страницы. Читать HTML можно только через PageRepository.findStoredContentById:
+ * остальные запросы к page тело страницы не выбирают.
+ */
+@Component
+public class PageContentCodec {
+
+    private final ContentStorage storage;
+
+    public PageContentCodec(CrawlerSettings settings) {
+        this.storage = settings.getContentStorage();
+    }
+
+    public ContentStorage getStorage() {
+        return storage;
+    }
+
+    public void store(Page page, String html) {
+        switch (storage) {
+            case HTML -> page.setContent(html);
+            case COMPRESSED -> {
+                page.setContent("");
+                page.setCompressedContent(compress(html));
+            }
+            case TEXT -> page.setContent("");
+        }
+    }
+
+    // HTML страницы в любом из форматов; пустая строка, если он не хранился
+    public String load(PageRepository.StoredContent stored) {
+        if (stored.getCompressedContent() != null) {
+            return decompress(stored.getCompressedContent());
+        }
+        return stored.getContent() != null ? stored.getContent() : "";
+    }
+
+    static byte[] compress(String html) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(html.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(html.length() / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Обрезанное сжатое содержимое страницы");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждённое сжатое содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.services;
+
+import java.util.Arrays;
+
+/**
+ * Posting list: отсортированные по возрастанию id страниц и накопленный rank для каждой из них.
+ * Пересечение - слияние двух отсортированных массивов за O(n + m) с суммированием rank.
+ */
+public final class Postings {
+
+    public static final Postings EMPTY = new Postings(new int[0], new float[0], 0);
+
+    private final int[] pageIds;
+    private final float[] ranks;
+    private final int size;
+
+    private Postings(int[] pageIds, float[] ranks, int size) {
+        this.pageIds = pageIds;
+        this.ranks = ranks;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageId(int i) {
+        return pageIds[i];
+    }
+
+    public float rank(int i) {
+        return ranks[i];
+    }
+
+    public int[] pageIds() {
+        return Arrays.copyOf(pageIds, size);
+    }
+
+    public Postings intersect(Postings other) {
+        int capacity = Math.min(size, other.size);
+        int[] ids = new int[capacity];
+        float[] sums = new float[capacity];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int a = pageIds[i];
+            int b = other.pageIds[j];
+            if (a == b) {
+                ids[n] = a;
+                sums[n++] = ranks[i++] + other.ranks[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new Postings(ids, sums, n);
+    }
+
+    public static class Builder {
+        private int[] pageIds;
+        private float[] ranks;
+        private int size;
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            this.pageIds = new int[capacity];
+            this.ranks = new float[capacity];
+        }
+
+        // id должны добавляться по возрастанию
+        public Builder add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size++] = rank;
+            return this;
+        }
+
+        public Postings build() {
+            return new Postings(pageIds, ranks, size);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package searchengine.services;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Полный отсортированный по релевантности список результатов запроса. Страницы выдачи
+ * (offset/limit) берутся из него срезом, поэтому он и кэшируется.
+ */
+public record RankedHits(List<SearchHit> hits, float maxRelevance, Set<Integer> lemmaIds) {
+}
@@ -0,0 +1,7 @@
+package searchengine.services;
+
+import searchengine.model.Site;
+
+// Найденная страница с абсолютной релевантностью (сумма rank лемм запроса)
+public record SearchHit(int pageId, Site site, float relevance) {
+}
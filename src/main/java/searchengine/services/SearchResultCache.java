@@ -0,0 +1,127 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.*;
+
+/**
+ * LRU-кэш ранжированных результатов поиска. Ключ - отсортированный набор лемм запроса и фильтр по сайту,
+ * поэтому «Купить слона» и «слона купить» попадают в одну запись, а листание выдачи берёт срез
+ * из уже посчитанного списка. Размер ограничен числом записей и суммарным числом результатов.
+ * Записи сайта удаляются, когда меняется индекс, который видит поиск: после обхода сайта, переключения
+ * поколения, переиндексации страницы; запросы по всем сайтам - при изменении любого. Инкрементальный обход
+ * пишет в видимое поколение, но кэш сбрасывается один раз в его конце: до этого выдача может не отражать
+ * уже записанные изменения, зато кэш работает и во время обхода. Результат, посчитанный во время
+ * изменения, не сохраняется (проверка по версии). Счётчики кэша - метрики search.cache.* в Actuator.
+ */
+@Component
+public class SearchResultCache {
+
+    private final int maxEntries;
+    private final long maxHits;
+
+    private final LinkedHashMap<Key, RankedHits> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedHits;
+    private long version;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    public SearchResultCache(SearchSettings settings, MeterRegistry registry) {
+        this.maxEntries = settings.getCacheMaxEntries();
+        this.maxHits = settings.getCacheMaxHits();
+        registerMeters(registry);
+    }
+
+    // siteUrl == null - поиск по всем сайтам
+    public record Key(List<String> lemmas, String siteUrl) {
+        public static Key of(Set<String> lemmas, String siteUrl) {
+            List<String> sorted = new ArrayList<>(lemmas);
+            Collections.sort(sorted);
+            return new Key(List.copyOf(sorted), siteUrl == null || siteUrl.isBlank() ? null : siteUrl);
+        }
+    }
+
+    // Согласованный снимок счётчиков для метрик
+    public record Stats(long hits, long misses, long evictions, long invalidations, int entries, long cachedHits) {
+    }
+
+    public synchronized RankedHits get(Key key) {
+        RankedHits result = entries.get(key);
+        if (result == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return result;
+    }
+
+    // Версию нужно прочитать до вычисления результата и передать в put()
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized void put(Key key, RankedHits result, long computedAtVersion) {
+        int weight = result.hits().size();
+        if (computedAtVersion != version || weight > maxHits) {
+            return;
+        }
+        RankedHits previous = entries.put(key, result);
+        cachedHits += weight - (previous == null ? 0 : previous.hits().size());
+        Iterator<RankedHits> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || cachedHits > maxHits) && eldest.hasNext()) {
+            RankedHits evicted = eldest.next();
+            eldest.remove();
+            cachedHits -= evicted.hits().size();
+            evictionCount++;
+        }
+    }
+
+    public synchronized void invalidateSite(String siteUrl) {
+        version++;
+        Iterator<Map.Entry<Key, RankedHits>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, RankedHits> entry = iterator.next();
+            String keySite = entry.getKey().siteUrl();
+            if (keySite == null || keySite.equals(siteUrl)) {
+                cachedHits -= entry.getValue().hits().size();
+                iterator.remove();
+                invalidationCount++;
+            }
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hitCount, missCount, evictionCount, invalidationCount, entries.size(), cachedHits);
+    }
+
+    // По ним подбираются search-settings.cache-max-*
+    private void registerMeters(MeterRegistry registry) {
+        FunctionCounter.builder("search.cache.gets", this, cache -> cache.stats().hits())
+                .description("Запросы к кэшу выдачи, нашедшие результат")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("search.cache.gets", this, cache -> cache.stats().misses())
+                .description("Запросы к кэшу выдачи, не нашедшие результата")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("search.cache.evictions", this, cache -> cache.stats().evictions())
+                .description("Записи, вытесненные по лимиту числа записей или результатов")
+                .register(registry);
+        FunctionCounter.builder("search.cache.invalidations", this, cache -> cache.stats().invalidations())
+                .description("Записи, удалённые из-за изменения индекса")
+                .register(registry);
+        Gauge.builder("search.cache.size", this, cache -> cache.stats().entries())
+                .description("Записей в кэше выдачи")
+                .register(registry);
+        Gauge.builder("search.cache.results", this, cache -> cache.stats().cachedHits())
+                .description("Результатов во всех записях кэша выдачи")
+                .register(registry);
+    }
+}
@@ -0,0 +1,205 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.Site;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.PageRepository.PageSummary;
+import searchengine.repositories.PostingRepository;
+import searchengine.repositories.PostingRepository.LemmaStat;
+import searchengine.repositories.SiteRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск по индексу. Запрос лемматизируется, для каждого сайта леммы сортируются по частоте,
+ * слишком частые отбрасываются, и posting lists пересекаются начиная с самой редкой леммы:
+ * каждая следующая читается только для оставшихся страниц-кандидатов. Абсолютная релевантность -
+ * сумма rank лемм запроса на странице, относительная - делённая на максимальную среди результатов.
+ * Для возвращаемого диапазона offset/limit читаются заголовок и текст страниц, извлечённые при индексации,
+ * и позиции лемм из индекса: сниппет строится без разбора HTML. Ранжированный список кэшируется
+ * в SearchResultCache, и листание выдачи не обращается к индексу.
+ */
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    // Пока кандидатов не больше этого числа, posting list следующей леммы читается только по ним
+    private static final int RESTRICT_TO_CANDIDATES = 10_000;
+
+    private final LemmaService lemmaService;
+    private final SnippetBuilder snippetBuilder;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PostingRepository postingRepository;
+    private final SearchSettings settings;
+    private final SearchResultCache resultCache;
+    private final PageContentCodec pageContentCodec;
+    private final ConcurrentHashMap<String, SiteSize> siteSizes = new ConcurrentHashMap<>();
+
+    public SearchServiceImpl(LemmaService lemmaService, SnippetBuilder snippetBuilder, SiteRepository siteRepository,
+                             PageRepository pageRepository, PostingRepository postingRepository, SearchSettings settings,
+                             SearchResultCache resultCache, PageContentCodec pageContentCodec) {
+        this.lemmaService = lemmaService;
+        this.snippetBuilder = snippetBuilder;
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.postingRepository = postingRepository;
+        this.settings = settings;
+        this.resultCache = resultCache;
+        this.pageContentCodec = pageContentCodec;
+    }
+
+    private record SiteSize(int generation, int pages, long expiresAt) {
+    }
+
+    @Override
+    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        Set<String> lemmas = lemmaService.collectLemmas(query).keySet();
+        if (lemmas.isEmpty()) {
+            throw new IllegalArgumentException("Запрос не содержит слов для поиска");
+        }
+
+        SearchResultCache.Key key = SearchResultCache.Key.of(lemmas, siteUrl);
+        RankedHits ranked = resultCache.get(key);
+        if (ranked == null) {
+            long version = resultCache.version();
+            ranked = rank(lemmas, key.siteUrl());
+            resultCache.put(key, ranked, version);
+        }
+
+        List<SearchHit> hits = ranked.hits();
+        int from = Math.min(Math.max(offset, 0), hits.size());
+        int to = Math.min(hits.size(), from + resolveLimit(limit));
+        List<SearchData> data = toSearchData(hits.subList(from, to), lemmas, ranked.lemmaIds(), ranked.maxRelevance());
+
+        SearchResponse response = new SearchResponse();
+        response.setResult(true);
+        response.setCount(hits.size());
+        response.setData(data);
+        return response;
+    }
+
+    private RankedHits rank(Set<String> lemmas, String siteUrl) {
+        List<Site> sites;
+        if (siteUrl == null) {
+            sites = siteRepository.findAll();
+        } else {
+            Site site = siteRepository.findByUrl(siteUrl);
+            if (site == null) {
+                throw new IllegalArgumentException("Указанный сайт не найден среди проиндексированных");
+            }
+            sites = List.of(site);
+        }
+
+        List<SearchHit> hits = new ArrayList<>();
+        Set<Integer> lemmaIds = new HashSet<>();
+        for (Site site : sites) {
+            collectHits(site, lemmas, hits, lemmaIds);
+        }
+        float maxRelevance = 0;
+        for (SearchHit hit : hits) {
+            maxRelevance = Math.max(maxRelevance, hit.relevance());
+        }
+        hits.sort(Comparator.comparingDouble(SearchHit::relevance).reversed().thenComparingInt(SearchHit::pageId));
+        return new RankedHits(List.copyOf(hits), maxRelevance, Set.copyOf(lemmaIds));
+    }
+
+    private void collectHits(Site site, Set<String> lemmas, List<SearchHit> hits, Set<Integer> lemmaIds) {
+        List<LemmaStat> stats = postingRepository.findLemmas(site.getId(), site.getGeneration(), lemmas);
+        if (stats.size() < lemmas.size()) {
+            return;  // Какой-то леммы нет на сайте - ни одна страница не содержит все слова запроса
+        }
+        for (LemmaStat stat : stats) {
+            lemmaIds.add(stat.id());  // В сниппете выделяются и частые леммы
+        }
+        stats.sort(Comparator.comparingInt(LemmaStat::frequency));
+
+        double maxFrequency = settings.getFrequentLemmaThreshold() * siteSize(site);
+        List<LemmaStat> selective = stats.stream().filter(stat -> stat.frequency() <= maxFrequency).toList();
+        if (selective.isEmpty()) {
+            selective = List.of(stats.get(0));  // Все леммы частые: ищем по самой редкой
+        }
+
+        LemmaStat rarest = selective.get(0);
+        Postings candidates = postingRepository.findPostings(rarest.id(), rarest.frequency());
+        for (int i = 1; i < selective.size() && candidates.size() > 0; i++) {
+            LemmaStat next = selective.get(i);
+            Postings postings = candidates.size() <= RESTRICT_TO_CANDIDATES
+                    ? postingRepository.findPostings(next.id(), candidates.pageIds())
+                    : postingRepository.findPostings(next.id(), next.frequency());
+            candidates = candidates.intersect(postings);
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            hits.add(new SearchHit(candidates.pageId(i), site, candidates.rank(i)));
+        }
+    }
+
+    private List<SearchData> toSearchData(List<SearchHit> hits, Set<String> lemmas, Set<Integer> lemmaIds, float maxRelevance) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> pageIds = hits.stream().map(SearchHit::pageId).toList();
+        Map<Integer, PageSummary> pages = pageRepository.findSummariesByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(PageSummary::getId, Function.identity()));
+        Map<Integer, List<byte[]>> positions = postingRepository.findPositions(pageIds, lemmaIds);
+        List<SearchData> data = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            PageSummary page = pages.get(hit.pageId());
+            if (page == null) {
+                continue;  // Страница удалена переиндексацией после чтения индекса
+            }
+            SearchData item = new SearchData();
+            item.setSite(hit.site().getUrl());
+            item.setSiteName(hit.site().getName());
+            item.setUri(toUri(hit.site(), page.getPath()));
+            if (page.getText() != null) {
+                item.setTitle(page.getTitle());
+                item.setSnippet(snippetBuilder.buildFromPositions(page.getText(), positions.getOrDefault(hit.pageId(), List.of())));
+            } else {
+                setFromContent(item, hit.pageId(), lemmas);
+            }
+            item.setRelevance(maxRelevance > 0 ? hit.relevance() / maxRelevance : 0);
+            data.add(item);
+        }
+        return data;
+    }
+
+    // Страницы, проиндексированные до сохранения текста: заголовок и сниппет из HTML
+    private void setFromContent(SearchData item, int pageId, Set<String> lemmas) {
+        PageRepository.StoredContent stored = pageRepository.findStoredContentById(pageId);
+        if (stored == null) {
+            return;
+        }
+        Document doc = Jsoup.parse(pageContentCodec.load(stored));
+        item.setTitle(doc.title());
+        item.setSnippet(snippetBuilder.build(doc.body() != null ? doc.body().text() : doc.text(), lemmas));
+    }
+
+    // В page.path хранится полный адрес страницы, а интерфейсу нужен путь относительно сайта
+    private String toUri(Site site, String path) {
+        return path.startsWith(site.getUrl()) ? path.substring(site.getUrl().length()) : path;
+    }
+
+    private int resolveLimit(int limit) {
+        return limit <= 0 ? settings.getDefaultLimit() : Math.min(limit, settings.getMaxLimit());
+    }
+
+    // Число страниц сайта нужно только для порога частых лемм, поэтому его можно кэшировать до смены поколения
+    private int siteSize(Site site) {
+        long now = System.currentTimeMillis();
+        SiteSize size = siteSizes.get(site.getUrl());
+        if (size == null || size.expiresAt() < now || size.generation() != site.getGeneration()) {
+            size = new SiteSize(site.getGeneration(), pageRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()),
+                    now + settings.getSiteSizeCacheTtl());
+            siteSizes.put(site.getUrl(), size);
+        }
+        return size.pages();
+    }
+}
@@ -0,0 +1,110 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.CancellationToken;
+import searchengine.services.crawler.CrawlQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределённый режим: раз в queuePollInterval проверяет сайты, которые сейчас индексируются, и подключает
+ * этот узел к обходу, если в общей очереди сайта остались адреса. Обход, остановленный или законченный
+ * на другом узле, здесь отменяется. Поколение сайта может переключить любой узел, поэтому заодно
+ * сбрасывается кэш выдачи сайтов, у которых поменялось активное поколение. Индексация, запущенная на этом
+ * узле, останавливает подключённый обход того же сайта и продолжает общую очередь сама (IndexingService.joinCrawl).
+ */
+@Slf4j
+@Component
+public class SharedCrawlWorker {
+
+    private final IndexingService indexingService;
+    private final CrawlQueue crawlQueue;
+    private final SitesList sitesList;
+    private final SiteRepository siteRepository;
+    private final SearchResultCache searchResultCache;
+    private final Map<String, CancellationToken> joined = new ConcurrentHashMap<>();  // Подключённые обходы по URL сайта
+    private final Map<String, Integer> generations = new ConcurrentHashMap<>();  // Активные поколения при прошлой проверке
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService crawls = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SharedCrawlWorker(IndexingService indexingService, CrawlQueue crawlQueue, SitesList sitesList,
+                             SiteRepository siteRepository, SearchResultCache searchResultCache, CrawlerSettings settings) {
+        this.indexingService = indexingService;
+        this.crawlQueue = crawlQueue;
+        this.sitesList = sitesList;
+        this.siteRepository = siteRepository;
+        this.searchResultCache = searchResultCache;
+        if (settings.isDistributed()) {
+            scheduler.scheduleWithFixedDelay(this::poll, settings.getQueuePollInterval(),
+                    settings.getQueuePollInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Подключённые обходы отменяются, чтобы их аренды сразу вернулись в очередь, а не ждали истечения
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        joined.values().forEach(CancellationToken::cancel);
+        crawls.close();
+    }
+
+    private void poll() {
+        try {
+            for (Site site : siteRepository.findAll()) {
+                invalidateIfSwitched(site);
+                CancellationToken token = joined.get(site.getUrl());
+                if (site.getStatus() != Status.INDEXING) {
+                    if (token != null) {
+                        token.cancel();
+                    }
+                } else if (token == null && !indexingService.isIndexing() && site.getBuildingGeneration() != null
+                        && crawlQueue.hasOpen(site.getId(), site.getBuildingGeneration())) {
+                    join(site);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка при проверке общей очереди обхода: {}", e.getMessage());
+        }
+    }
+
+    private void join(Site site) {
+        searchengine.config.Site configSite = sitesList.getSites().stream()
+                .filter(s -> s.getUrl().equals(site.getUrl()))
+                .findFirst()
+                .orElse(null);
+        if (configSite == null) {
+            return;  // Сайт не из конфигурации этого узла
+        }
+        CancellationToken token = new CancellationToken();
+        joined.put(site.getUrl(), token);
+        log.info("Узел {} подключается к обходу сайта {} (поколение {}).", crawlQueue.getNodeId(), site.getUrl(),
+                site.getBuildingGeneration());
+        crawls.execute(() -> {
+            try {
+                indexingService.joinCrawl(site, configSite, token);
+            } finally {
+                joined.remove(site.getUrl());
+            }
+        });
+    }
+
+    // Закэшированная на этом узле выдача ссылается на страницы прежнего поколения
+    private void invalidateIfSwitched(Site site) {
+        Integer previous = generations.put(site.getUrl(), site.getGeneration());
+        if (previous != null && previous != site.getGeneration()) {
+            searchResultCache.invalidateSite(site.getUrl());
+        }
+    }
+}
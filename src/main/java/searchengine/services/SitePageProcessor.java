@@ -0,0 +1,225 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.CrawlerSettings.ContentStorage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.IndexBatchRepository.KnownPage;
+import searchengine.repositories.PageRepository;
+import searchengine.services.crawler.CrawlMetrics;
+import searchengine.services.crawler.CrawlTask;
+import searchengine.services.crawler.FetchResult;
+import searchengine.services.crawler.HtmlExtractor;
+import searchengine.services.crawler.HtmlExtractor.ExtractedPage;
+import searchengine.services.crawler.HtmlExtractor.MediaLink;
+import searchengine.services.crawler.KnownPages;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.crawler.PageProcessor;
+import searchengine.services.crawler.SiteCrawler;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Загрузка и разбор страниц сайта для обхода: из ответа строится Page, считаются леммы, и страница
+ * ставится в очередь PageBatchWriter; найденные ссылки возвращаются обходу, медиафайлы проверяются
+ * отдельно. При инкрементальной переиндексации (KnownPages) страницы запрашиваются условным GET,
+ * а неизменившиеся не перезаписываются.
+ */
+@Slf4j
+@Component
+public class SitePageProcessor {
+
+    private static final int MAX_TITLE_LENGTH = 512;
+    private static final int MAX_ETAG_LENGTH = 255;
+    private static final int MAX_LAST_MODIFIED_LENGTH = 64;
+
+    private final CrawlerSettings crawlerSettings;
+    private final PageFetcher pageFetcher;
+    private final PageBatchWriter pageBatchWriter;
+    private final PageRepository pageRepository;
+    private final PageContentCodec pageContentCodec;
+    private final LemmaService lemmaService;
+    private final CrawlMetrics crawlMetrics;
+
+    public SitePageProcessor(CrawlerSettings crawlerSettings, PageFetcher pageFetcher, PageBatchWriter pageBatchWriter,
+                             PageRepository pageRepository, PageContentCodec pageContentCodec, LemmaService lemmaService,
+                             CrawlMetrics crawlMetrics) {
+        this.crawlerSettings = crawlerSettings;
+        this.pageFetcher = pageFetcher;
+        this.pageBatchWriter = pageBatchWriter;
+        this.pageRepository = pageRepository;
+        this.pageContentCodec = pageContentCodec;
+        this.lemmaService = lemmaService;
+        this.crawlMetrics = crawlMetrics;
+    }
+
+    // Обработчик страниц одного обхода: пишет в поколение generation сайта
+    public PageProcessor forSite(Site site, int generation, KnownPages knownPages) {
+        return new PageProcessor() {
+            @Override
+            public FetchResult fetch(CrawlTask task) throws IOException {
+                // Отмечается до запроса: страница с временной ошибкой загрузки не должна удаляться как исчезнувшая
+                if (!knownPages.markSeen(task.url())) {
+                    return pageFetcher.fetch(task.url());
+                }
+                // Без сохранённого HTML ссылки страницы, ответившей 304, взять неоткуда
+                if (pageContentCodec.getStorage() == ContentStorage.TEXT) {
+                    return pageFetcher.fetch(task.url());
+                }
+                KnownPage known = knownPages.get(task.url());
+                return pageFetcher.fetchIfModified(task.url(), known.etag(), known.lastModified());
+            }
+
+            @Override
+            public List<String> process(CrawlTask task, FetchResult result, SiteCrawler crawler) throws IOException {
+                Timer.Sample sample = crawlMetrics.startTimer();
+                try {
+                    return processPage(task, result, crawler, site, generation, knownPages);
+                } catch (IOException | RuntimeException e) {
+                    crawlMetrics.error(e.getClass().getSimpleName());
+                    throw e;
+                } finally {
+                    crawlMetrics.parsed(sample);
+                }
+            }
+        };
+    }
+
+    // Страница из загруженного ответа, с заголовком, текстом и хэшем содержимого
+    public Page buildPage(Site site, int generation, FetchResult result) {
+        return buildPage(site, generation, result, extract(result, site), contentHash(result.body()));
+    }
+
+    // Страницы с ошибкой сохраняются, но не индексируются
+    public Map<String, LemmaOccurrences> collectLemmas(Page page, FetchResult result) {
+        return result.isSuccess() ? lemmaService.collectOccurrences(page.getTitle(), page.getText()) : Map.of();
+    }
+
+    private List<String> processPage(CrawlTask task, FetchResult result, SiteCrawler crawler, Site site, int generation,
+                                     KnownPages knownPages) throws IOException {
+        String url = task.url();
+        KnownPage known = knownPages.get(url);
+        if (result.isNotModified() && known != null) {
+            return unchangedPageLinks(known, crawler, site, generation, knownPages);
+        }
+        if (task.depth() == 0 && !result.isSuccess()) {
+            throw new IOException("код ответа " + result.statusCode());
+        }
+        // Тип содержимого проверяется до разбора: для не-HTML тело даже не скачивалось
+        if (!result.isHtml()) {
+            log.debug("Пропущена страница {} с неподдерживаемым типом содержимого.", url);
+            return List.of();
+        }
+
+        String contentHash = contentHash(result.body());
+        ExtractedPage extracted = extract(result, site);
+        if (known != null && contentHash.equals(known.contentHash()) && known.code() == result.statusCode()) {
+            // Содержимое не изменилось: ни лемматизации, ни записи, только ссылки для продолжения обхода
+            return result.isSuccess() ? extractLinks(extracted, site, generation, crawler, knownPages) : List.of();
+        }
+
+        Page page = buildPage(site, generation, result, extracted, contentHash);
+        // Леммы считаются здесь, на пуле разбора, пока текст страницы уже в памяти
+        pageBatchWriter.add(page, collectLemmas(page, result), known != null ? known.id() : 0);
+        log.debug("Страница {} поставлена в очередь на сохранение.", url);
+
+        if (!result.isSuccess()) {
+            return List.of();
+        }
+        return extractLinks(extracted, site, generation, crawler, knownPages);
+    }
+
+    // Один проход по началу страницы не длиннее crawler.extract-max-bytes, без дерева DOM.
+    // Относительные ссылки разрешаются от адреса ответа: для /docs/ это каталог docs, для /docs - корень
+    private ExtractedPage extract(FetchResult result, Site site) {
+        return HtmlExtractor.extract(result.body(), result.charset(), result.url(), site.getUrl(), crawlerSettings.getExtractMaxBytes());
+    }
+
+    private Page buildPage(Site site, int generation, FetchResult result, ExtractedPage extracted, String contentHash) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setGeneration(generation);
+        page.setPath(result.url());
+        page.setCode(result.statusCode());
+        pageContentCodec.store(page, extracted.html());
+        String title = extracted.title();
+        page.setTitle(title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title);
+        page.setText(extracted.text());
+        page.setContentHash(contentHash);
+        page.setEtag(headerValue(result, "ETag", MAX_ETAG_LENGTH));
+        page.setLastModified(headerValue(result, "Last-Modified", MAX_LAST_MODIFIED_LENGTH));
+        return page;
+    }
+
+    // Страница ответила 304: ссылки берутся из сохранённого HTML
+    private List<String> unchangedPageLinks(KnownPage known, SiteCrawler crawler, Site site, int generation, KnownPages knownPages) {
+        if (known.code() < 200 || known.code() >= 300) {
+            return List.of();
+        }
+        PageRepository.StoredContent stored = pageRepository.findStoredContentById(known.id());
+        String content = stored != null ? pageContentCodec.load(stored) : "";
+        if (content.isEmpty()) {
+            return List.of();
+        }
+        return extractLinks(HtmlExtractor.extract(content, known.path(), site.getUrl()), site, generation, crawler, knownPages);
+    }
+
+    // Ссылки на страницы того же сайта ставятся в очередь обхода, медиафайлы проверяются отдельно
+    private List<String> extractLinks(ExtractedPage extracted, Site site, int generation, SiteCrawler crawler, KnownPages knownPages) {
+        for (MediaLink media : extracted.media()) {
+            if (isNewMedia(media.url(), crawler, knownPages)) {
+                crawler.submitIo(() -> saveMediaFile(media.url(), site, generation, media.type()));
+            }
+        }
+        return extracted.links();
+    }
+
+    // Медиафайл, сохранённый прошлым обходом, повторно не запрашивается
+    private boolean isNewMedia(String url, SiteCrawler crawler, KnownPages knownPages) {
+        return crawler.markMediaVisited(url) && !knownPages.markSeen(url);
+    }
+
+    private String contentHash(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // SHA-256 есть в любой JVM
+        }
+    }
+
+    private String headerValue(FetchResult result, String name, int maxLength) {
+        String value = result.headers().get(name);
+        return value != null && value.length() <= maxLength ? value : null;
+    }
+
+    private void saveMediaFile(String fileUrl, Site site, int generation, String fileType) {
+        try {
+            FetchResult probe = pageFetcher.probe(fileUrl);
+            if (probe.isSuccess() && isValidMediaType(probe.contentType())) {
+                Page mediaPage = new Page();
+                mediaPage.setSite(site);
+                mediaPage.setGeneration(generation);
+                mediaPage.setPath(fileUrl);
+                mediaPage.setCode(probe.statusCode());
+                mediaPage.setContent("");
+                pageBatchWriter.add(mediaPage);
+
+                log.debug("{} файл {} поставлен в очередь на сохранение.", fileType.toUpperCase(), fileUrl);
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка при сохранении {} файла {}: {}", fileType, fileUrl, e.getMessage());
+        }
+    }
+
+    private boolean isValidMediaType(String fileType) {
+        return fileType != null && (fileType.startsWith("image/") || fileType.startsWith("text/") || fileType.startsWith("application/"));
+    }
+}
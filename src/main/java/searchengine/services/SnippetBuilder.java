@@ -0,0 +1,139 @@
+package searchengine.services;
+
+import org.jsoup.nodes.Entities;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Сниппет результата поиска: окно текста фиксированной длины, содержащее больше всего совпадений
+ * с леммами запроса. Совпадения выделяются тегом b, остальной текст экранируется.
+ * Работа линейна по числу совпадений и длине окна, а не по размеру страницы.
+ */
+@Component
+public class SnippetBuilder {
+
+    private static final int SNIPPET_LENGTH = 240;
+    private static final int LEADING_CONTEXT = 40;  // Символов текста перед первым совпадением в окне
+
+    private final LemmaService lemmaService;
+
+    public SnippetBuilder(LemmaService lemmaService) {
+        this.lemmaService = lemmaService;
+    }
+
+    // Совпадения ищутся лемматизацией всего текста (для страниц, проиндексированных без позиций)
+    public String build(String text, Set<String> queryLemmas) {
+        int[][] holder = {new int[16], new int[16]};  // Начала и концы совпадений
+        int[] count = new int[1];
+        lemmaService.forEachWord(text, (word, start, end) -> {
+            String lemma = lemmaService.lemmaOf(word);
+            if (lemma == null || !queryLemmas.contains(lemma)) {
+                return;
+            }
+            if (count[0] == holder[0].length) {
+                holder[0] = Arrays.copyOf(holder[0], count[0] * 2);
+                holder[1] = Arrays.copyOf(holder[1], count[0] * 2);
+            }
+            holder[0][count[0]] = start;
+            holder[1][count[0]++] = end;
+        });
+        return build(text, holder[0], holder[1], count[0]);
+    }
+
+    /**
+     * Сниппет по сохранённым при индексации позициям лемм: текст не лемматизируется заново,
+     * конец слова находится просмотром букв от его начала.
+     */
+    public String buildFromPositions(String text, List<byte[]> encodedPositions) {
+        int total = 0;
+        int[][] decoded = new int[encodedPositions.size()][];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = LemmaOccurrences.decodePositions(encodedPositions.get(i));
+            total += decoded[i].length;
+        }
+        int[] starts = new int[total];
+        int count = 0;
+        for (int[] positions : decoded) {
+            for (int start : positions) {
+                if (start < text.length()) {
+                    starts[count++] = start;
+                }
+            }
+        }
+        Arrays.sort(starts, 0, count);
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            int end = starts[i];
+            while (end < text.length() && Character.isLetter(text.charAt(end))) {
+                end++;
+            }
+            ends[i] = end;
+        }
+        return build(text, starts, ends, count);
+    }
+
+    /**
+     * starts/ends - границы совпадений в text, отсортированные по возрастанию; используются первые count.
+     */
+    public String build(String text, int[] starts, int[] ends, int count) {
+        int from = 0;
+        if (count > 0) {
+            // Окно из SNIPPET_LENGTH символов с наибольшим числом совпадений: два указателя по списку совпадений
+            int best = 0;
+            int bestMatches = 0;
+            for (int left = 0, right = 0; left < count; left++) {
+                right = Math.max(right, left);
+                while (right < count && ends[right] - starts[left] <= SNIPPET_LENGTH - LEADING_CONTEXT) {
+                    right++;
+                }
+                if (right - left > bestMatches) {
+                    bestMatches = right - left;
+                    best = left;
+                }
+            }
+            from = Math.max(0, starts[best] - LEADING_CONTEXT);
+        }
+        int to = Math.min(text.length(), from + SNIPPET_LENGTH);
+        from = alignStart(text, from);
+        to = alignEnd(text, to);
+
+        StringBuilder snippet = new StringBuilder(SNIPPET_LENGTH + 64);
+        if (from > 0) {
+            snippet.append("...");
+        }
+        int position = from;
+        for (int i = 0; i < count; i++) {
+            if (starts[i] < from || ends[i] > to) {
+                continue;
+            }
+            snippet.append(Entities.escape(text.substring(position, starts[i])))
+                    .append("<b>").append(Entities.escape(text.substring(starts[i], ends[i]))).append("</b>");
+            position = ends[i];
+        }
+        snippet.append(Entities.escape(text.substring(position, to)));
+        if (to < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    // Начало окна сдвигается к началу слова, чтобы сниппет не начинался с обрывка
+    private int alignStart(String text, int from) {
+        if (from == 0) {
+            return 0;
+        }
+        int space = text.lastIndexOf(' ', from);
+        return space < 0 ? 0 : space + 1;
+    }
+
+    private int alignEnd(String text, int to) {
+        if (to >= text.length()) {
+            return text.length();
+        }
+        int space = text.indexOf(' ', to);
+        return space < 0 || space - to > LEADING_CONTEXT ? to : space;
+    }
+}
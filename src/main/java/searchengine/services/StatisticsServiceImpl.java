@@ -1,55 +1,84 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.CrawlProgress;
+import searchengine.services.crawler.CrawlProgressTracker;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Статистика по счётчикам из таблицы site, которые ведёт индексация, без COUNT(*) по страницам
+ * и леммам: один запрос на все сайты. Для сайтов, которые обходятся сейчас, оба счётчика берутся
+ * из живых счётчиков обхода: строка сайта обновляется раз в statusFlushInterval, и страницы с леммами
+ * из разных источников расходились бы. Сайт из конфигурации без строки в базе ещё не индексировался.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final Random random = new Random();
+    private static final String NOT_INDEXED = "Сайт ещё не индексировался";
+
     private final SitesList sites;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final CrawlProgressTracker progressTracker;
+    private final IndexingService indexingService;
 
     @Override
     public StatisticsResponse getStatistics() {
-        String[] statuses = { "INDEXED", "FAILED", "INDEXING" };
-        String[] errors = {
-                "Ошибка индексации: главная страница сайта не доступна",
-                "Ошибка индексации: сайт не доступен",
-                ""
-        };
+        Map<String, Site> indexedSites = siteRepository.findAll().stream()
+                .collect(Collectors.toMap(Site::getUrl, Function.identity(), (first, second) -> first));
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingService.isIndexing());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<Site> sitesList = sites.getSites();
-        for(int i = 0; i < sitesList.size(); i++) {
-            Site site = sitesList.get(i);
+        for (searchengine.config.Site configSite : sites.getSites()) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
-            item.setName(site.getName());
-            item.setUrl(site.getUrl());
-            int pages = random.nextInt(1_000);
-            int lemmas = pages * random.nextInt(1_000);
-            item.setPages(pages);
-            item.setLemmas(lemmas);
-            item.setStatus(statuses[i % 3]);
-            item.setError(errors[i % 3]);
-            item.setStatusTime(System.currentTimeMillis() -
-                    (random.nextInt(10_000)));
-            total.setPages(total.getPages() + pages);
-            total.setLemmas(total.getLemmas() + lemmas);
+            item.setName(configSite.getName());
+            item.setUrl(configSite.getUrl());
+
+            Site site = indexedSites.get(configSite.getUrl());
+            if (site == null) {
+                item.setStatus(Status.FAILED.name());
+                item.setError(NOT_INDEXED);
+            } else {
+                item.setStatus(site.getStatus().name());
+                item.setStatusTime(toMillis(site.getStatusTime()));
+                item.setError(site.getLastError() != null ? site.getLastError() : "");
+                item.setPages(site.getPageCount());
+                item.setLemmas(site.getLemmaCount());
+            }
+            CrawlProgress progress = progressTracker.get(configSite.getUrl());
+            if (progress != null) {
+                item.setPages(progress.getPagesSaved());
+                item.setLemmas(progress.getLemmaCount());
+            }
+            total.setPages(total.getPages() + item.getPages());
+            total.setLemmas(total.getLemmas() + item.getLemmas());
             detailed.add(item);
         }
 
@@ -61,4 +90,24 @@ public class StatisticsServiceImpl implements StatisticsService {
         response.setResult(true);
         return response;
     }
+
+    // Сайты, проиндексированные до появления счётчиков: один раз досчитываем их при запуске
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCounters() {
+        for (Site site : siteRepository.findAll()) {
+            if (site.getStatus() == Status.INDEXING || site.getPageCount() > 0) {
+                continue;
+            }
+            int pages = pageRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration());
+            if (pages > 0) {
+                siteRepository.updateProgressByUrl(site.getUrl(), site.getStatusTime(), pages,
+                        lemmaRepository.countBySiteIdAndGeneration(site.getId(), site.getGeneration()));
+                log.info("Пересчитаны счётчики сайта {}: страниц {}.", site.getUrl(), pages);
+            }
+        }
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
@@ -0,0 +1,38 @@
+package searchengine.services.crawler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Признак остановки одного запуска индексации. Стадии обхода проверяют его сами и заканчивают
+ * работу штатно; обработчики onCancel будят потоки, ждущие очереди хоста или ответа сервера.
+ */
+public class CancellationToken {
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        listeners.forEach(Runnable::run);
+    }
+
+    // Обработчик вызывается сразу, если запуск уже остановлен
+    public void onCancel(Runnable listener) {
+        listeners.add(listener);
+        if (cancelled) {
+            listener.run();
+        }
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,83 @@
+package searchengine.services.crawler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.repositories.CrawlCheckpointRepository;
+import searchengine.services.PageBatchWriter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически сохраняет очереди идущих полных переиндексаций в crawl_frontier. Перед записью снимка очереди
+ * сбрасывается буфер PageBatchWriter: страница, покинувшая очередь до снимка, к моменту записи
+ * контрольной точки уже есть в таблице page. После сбоя JVM обход продолжается с последней точки,
+ * теряется не больше checkpointInterval работы.
+ */
+@Slf4j
+@Component
+public class CrawlCheckpointer {
+
+    private final CrawlCheckpointRepository checkpointRepository;
+    private final PageBatchWriter pageBatchWriter;
+    private final ConcurrentHashMap<Integer, SiteCrawler> active = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public CrawlCheckpointer(CrawlCheckpointRepository checkpointRepository, PageBatchWriter pageBatchWriter,
+                             CrawlerSettings settings) {
+        this.checkpointRepository = checkpointRepository;
+        this.pageBatchWriter = pageBatchWriter;
+        if (settings.getCheckpointInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkpointAll, settings.getCheckpointInterval(),
+                    settings.getCheckpointInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void register(int siteId, SiteCrawler crawler) {
+        active.put(siteId, crawler);
+    }
+
+    // synchronized здесь и ниже: периодическая точка не должна записаться после clear()
+    public synchronized void unregister(int siteId) {
+        active.remove(siteId);
+    }
+
+    // Внеочередная контрольная точка, например после остановки обхода пользователем
+    public synchronized void checkpoint(int siteId, SiteCrawler crawler) {
+        Map<String, Integer> snapshot = crawler.pendingSnapshot();
+        pageBatchWriter.flush();
+        checkpointRepository.replaceFrontier(siteId, snapshot);
+    }
+
+    // Обход завершён: продолжать нечего
+    public synchronized void clear(int siteId) {
+        active.remove(siteId);
+        checkpointRepository.deleteFrontier(siteId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void checkpointIfActive(int siteId, SiteCrawler crawler) {
+        if (active.get(siteId) == crawler) {
+            checkpoint(siteId, crawler);
+        }
+    }
+
+    private void checkpointAll() {
+        active.forEach((siteId, crawler) -> {
+            try {
+                checkpointIfActive(siteId, crawler);
+            } catch (Exception e) {
+                log.warn("Ошибка при сохранении контрольной точки обхода сайта {}: {}", siteId, e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.services.crawler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Общие для всех сайтов пулы обхода. Блокирующие HTTP-запросы выполняются на виртуальных потоках
+ * (их общее число ограничивает HostScheduler). Разбор документов и запись в базу идут
+ * на пуле фиксированного размера (по умолчанию по числу ядер). Очередь и загрузка пула разбора
+ * видны в метриках executor.* с тегом name=crawler.parse.
+ */
+@Component
+public class CrawlExecutors {
+
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService parseExecutor;
+
+    public CrawlExecutors(CrawlerSettings settings, MeterRegistry registry) {
+        this.parseExecutor = Executors.newFixedThreadPool(settings.getParseThreads());
+        new ExecutorServiceMetrics(parseExecutor, "crawler.parse", Tags.empty()).bindTo(registry);
+    }
+
+    public ExecutorService fetchExecutor() {
+        return fetchExecutor;
+    }
+
+    public ExecutorService parseExecutor() {
+        return parseExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        parseExecutor.shutdownNow();
+    }
+}
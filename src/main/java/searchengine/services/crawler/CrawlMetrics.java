@@ -0,0 +1,114 @@
+package searchengine.services.crawler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики обхода для Actuator (/actuator/metrics/crawler.*). Таймеры публикуют перцентили 0.5/0.95/0.99,
+ * теги ограничены классом кода ответа и типом исключения, чтобы число рядов не росло с числом страниц.
+ */
+@Component
+public class CrawlMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Counter bytesDownloaded;
+    private final Timer hostWaitTimer;
+    private final Timer parseTimer;
+    private final Timer writeTimer;
+    private final Timer failedWriteTimer;
+    private final DistributionSummary writeBatchSize;
+
+    public CrawlMetrics(MeterRegistry registry, CrawlProgressTracker progressTracker) {
+        this.registry = registry;
+        this.bytesDownloaded = Counter.builder("crawler.bytes.downloaded")
+                .description("Скачано байт тел ответов")
+                .baseUnit("bytes")
+                .register(registry);
+        this.hostWaitTimer = Timer.builder("crawler.host.wait")
+                .description("Ожидание очереди хоста и общего лимита запросов перед отправкой")
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        this.parseTimer = Timer.builder("crawler.parse")
+                .description("Разбор страницы, лемматизация и постановка в очередь записи")
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        this.writeTimer = writeTimer("success");
+        this.failedWriteTimer = writeTimer("failure");
+        this.writeBatchSize = DistributionSummary.builder("crawler.db.write.batch")
+                .description("Страниц в пакете записи")
+                .register(registry);
+        Gauge.builder("crawler.queue.depth", progressTracker, tracker -> tracker.getActive().stream()
+                        .mapToInt(CrawlProgress::getQueueDepth).sum())
+                .description("Адресов в очередях обхода всех сайтов")
+                .register(registry);
+        Gauge.builder("crawler.sites.active", progressTracker, tracker -> tracker.getActive().size())
+                .description("Сайтов, которые обходятся сейчас")
+                .register(registry);
+    }
+
+    // method - GET или HEAD; statusCode - код ответа
+    public void fetched(String method, int statusCode, long nanos, int bodyBytes) {
+        fetchTimer(method, statusClass(statusCode)).record(nanos, TimeUnit.NANOSECONDS);
+        bytesDownloaded.increment(bodyBytes);
+        if (statusCode >= 400) {
+            error("http_" + statusClass(statusCode));
+        }
+    }
+
+    public void fetchFailed(String method, long nanos, Exception e) {
+        fetchTimer(method, "error").record(nanos, TimeUnit.NANOSECONDS);
+        error(e.getClass().getSimpleName());
+    }
+
+    public void hostWaited(long nanos) {
+        hostWaitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // type - класс кода ответа (http_4xx) или имя класса исключения
+    public void error(String type) {
+        registry.counter("crawler.errors", "type", type).increment();
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    public void parsed(Timer.Sample sample) {
+        sample.stop(parseTimer);
+    }
+
+    public void written(Timer.Sample sample, int pages, boolean success) {
+        sample.stop(success ? writeTimer : failedWriteTimer);
+        writeBatchSize.record(pages);
+    }
+
+    // Повторная регистрация возвращает уже созданный таймер
+    private Timer fetchTimer(String method, String status) {
+        return Timer.builder("crawler.fetch")
+                .description("HTTP-запросы обхода от отправки до получения тела, без ожидания очереди хоста")
+                .tag("method", method)
+                .tag("status", status)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private Timer writeTimer(String result) {
+        return Timer.builder("crawler.db.write")
+                .description("Транзакция записи пакета страниц, лемм и индекса")
+                .tag("result", result)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private static String statusClass(int statusCode) {
+        return statusCode >= 100 && statusCode < 600 ? (statusCode / 100) + "xx" : "other";
+    }
+}
@@ -0,0 +1,124 @@
+package searchengine.services.crawler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+// Живые счётчики обхода одного сайта. Обновляются из рабочих потоков без обращения к базе
+public class CrawlProgress {
+
+    private final String siteUrl;
+    private final int siteId;
+    private final int generation;  // Поколение, в которое пишет обход
+    private final AtomicLong pagesFetched = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong pagesSaved = new AtomicLong();
+    private final AtomicBoolean changed = new AtomicBoolean();
+    private final AtomicInteger lemmaCount = new AtomicInteger();
+    // Распределённый обход: приращения счётчиков, ещё не добавленные к строке сайта
+    private final AtomicInteger unsavedPages = new AtomicInteger();
+    private final AtomicInteger unsavedLemmas = new AtomicInteger();
+    private volatile boolean shared;  // Распределённый обход: страницы поколения пишут и другие узлы
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    // savedPages и savedLemmas - уже записанные в поколение (продолжение обхода, инкрементальная переиндексация)
+    public CrawlProgress(String siteUrl, int siteId, int generation, int savedPages, int savedLemmas) {
+        this.siteUrl = siteUrl;
+        this.siteId = siteId;
+        this.generation = generation;
+        this.pagesSaved.set(savedPages);
+        this.lemmaCount.set(savedLemmas);
+    }
+
+    public String getSiteUrl() {
+        return siteUrl;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public void pageFetched() {
+        pagesFetched.incrementAndGet();
+        changed.set(true);
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+        changed.set(true);
+    }
+
+    // Вызывается после фиксации транзакции с записанными страницами сайта: изменение числа страниц и лемм поколения
+    public void saved(int pages, int lemmas) {
+        pagesSaved.addAndGet(pages);
+        lemmaCount.addAndGet(lemmas);
+        unsavedPages.addAndGet(pages);
+        unsavedLemmas.addAndGet(lemmas);
+        changed.set(true);
+    }
+
+    public long getPagesFetched() {
+        return pagesFetched.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public int getPagesSaved() {
+        return (int) pagesSaved.get();
+    }
+
+    void setPagesSaved(int pagesSaved) {
+        this.pagesSaved.set(pagesSaved);
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    public int getLemmaCount() {
+        return lemmaCount.get();
+    }
+
+    void setLemmaCount(int lemmaCount) {
+        this.lemmaCount.set(lemmaCount);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    // true, если с прошлого вызова были изменения; сбрасывает признак
+    boolean takeChanged() {
+        return changed.getAndSet(false);
+    }
+
+    int takeUnsavedPages() {
+        return unsavedPages.getAndSet(0);
+    }
+
+    int takeUnsavedLemmas() {
+        return unsavedLemmas.getAndSet(0);
+    }
+
+    // Приращения, которые не удалось записать, добавятся к следующей записи
+    void restoreUnsaved(int pages, int lemmas) {
+        unsavedPages.addAndGet(pages);
+        unsavedLemmas.addAndGet(lemmas);
+        changed.set(true);
+    }
+}
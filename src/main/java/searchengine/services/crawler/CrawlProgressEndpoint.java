@@ -0,0 +1,33 @@
+package searchengine.services.crawler;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * /actuator/crawl: живые счётчики идущих обходов по сайтам, без обращения к базе.
+ * Пустой список - индексация сейчас не идёт.
+ */
+@Component
+@Endpoint(id = "crawl")
+public class CrawlProgressEndpoint {
+
+    private final CrawlProgressTracker progressTracker;
+
+    public CrawlProgressEndpoint(CrawlProgressTracker progressTracker) {
+        this.progressTracker = progressTracker;
+    }
+
+    public record SiteProgress(String url, long pagesFetched, int pagesSaved, int lemmas, long errors, int queueDepth) {
+    }
+
+    @ReadOperation
+    public List<SiteProgress> progress() {
+        return progressTracker.getActive().stream()
+                .map(progress -> new SiteProgress(progress.getSiteUrl(), progress.getPagesFetched(), progress.getPagesSaved(),
+                        progress.getLemmaCount(), progress.getErrors(), progress.getQueueDepth()))
+                .toList();
+    }
+}
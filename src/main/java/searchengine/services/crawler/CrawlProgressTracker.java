@@ -0,0 +1,130 @@
+package searchengine.services.crawler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.Site;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сводит «пульс» индексации в одно обновление status_time на сайт за statusFlushInterval,
+ * вместо UPDATE site на каждую загруженную страницу из всех рабочих потоков. Тем же UPDATE
+ * в site сохраняются счётчики страниц и лемм для статистики. Оба счётчика ведутся в памяти
+ * по зафиксированным пакетам: PageBatchWriter сообщает записанные страницы и число новых и удалённых
+ * лемм, база пересчитывается только один раз при начале обхода. В распределённом обходе страницы
+ * поколения записывают и другие узлы, поэтому узел прибавляет к счётчикам сайта свои приращения
+ * и читает итог из строки сайта.
+ */
+@Slf4j
+@Component
+public class CrawlProgressTracker {
+
+    private final SiteRepository siteRepository;
+    private final LemmaRepository lemmaRepository;
+    private final ConcurrentHashMap<String, CrawlProgress> active = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    public CrawlProgressTracker(SiteRepository siteRepository, LemmaRepository lemmaRepository, CrawlerSettings settings) {
+        this.siteRepository = siteRepository;
+        this.lemmaRepository = lemmaRepository;
+        flusher.scheduleWithFixedDelay(this::flush, settings.getStatusFlushInterval(),
+                settings.getStatusFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    // savedPages - страницы, уже записанные в поколение; леммы без них считать не нужно
+    public CrawlProgress start(String siteUrl, int siteId, int generation, int savedPages) {
+        int savedLemmas = savedPages > 0 ? lemmaRepository.countBySiteIdAndGeneration(siteId, generation) : 0;
+        CrawlProgress progress = new CrawlProgress(siteUrl, siteId, generation, savedPages, savedLemmas);
+        active.put(siteUrl, progress);
+        return progress;
+    }
+
+    // Обход общей очереди распределённого режима: отсчёт от счётчиков сайта, которые ведут все узлы сборки
+    public CrawlProgress startShared(String siteUrl, int siteId, int generation) {
+        Site site = siteRepository.findByUrl(siteUrl);
+        CrawlProgress progress = new CrawlProgress(siteUrl, siteId, generation, site.getPageCount(), site.getLemmaCount());
+        progress.setShared(true);
+        active.put(siteUrl, progress);
+        return progress;
+    }
+
+    // Итоговые счётчики записываются сразу; статус сайта записывает вызывающий код
+    public CrawlProgress finish(String siteUrl) {
+        CrawlProgress progress = active.remove(siteUrl);
+        if (progress != null) {
+            persist(progress, LocalDateTime.now());
+        }
+        return progress;
+    }
+
+    public CrawlProgress get(String siteUrl) {
+        return active.get(siteUrl);
+    }
+
+    // Учёт записанных страниц и лемм; для сайта, который сейчас не обходится, и для чужого поколения ничего не делает
+    public void saved(String siteUrl, int generation, int pages, int lemmas) {
+        CrawlProgress progress = active.get(siteUrl);
+        if (progress != null && progress.getGeneration() == generation) {
+            progress.saved(pages, lemmas);
+        }
+    }
+
+    public Collection<CrawlProgress> getActive() {
+        return active.values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    private void flush() {
+        LocalDateTime now = LocalDateTime.now();
+        for (CrawlProgress progress : active.values()) {
+            if (progress.takeChanged()) {
+                persist(progress, now);
+            }
+        }
+    }
+
+    // synchronized: итог из finish() не должен перезаписываться запоздавшим «пульсом»
+    private synchronized void persist(CrawlProgress progress, LocalDateTime now) {
+        if (!progress.isShared()) {
+            try {
+                siteRepository.updateProgressByUrl(progress.getSiteUrl(), now, progress.getPagesSaved(), progress.getLemmaCount());
+            } catch (Exception e) {
+                log.warn("Ошибка при обновлении статуса сайта {}: {}", progress.getSiteUrl(), e.getMessage());
+            }
+            return;
+        }
+        int pages = progress.takeUnsavedPages();
+        int lemmas = progress.takeUnsavedLemmas();
+        int updated;
+        try {
+            updated = siteRepository.addProgressByUrl(progress.getSiteUrl(), progress.getGeneration(), now, pages, lemmas);
+        } catch (Exception e) {
+            progress.restoreUnsaved(pages, lemmas);
+            log.warn("Ошибка при обновлении статуса сайта {}: {}", progress.getSiteUrl(), e.getMessage());
+            return;
+        }
+        // Сборка уже закончена или остановлена узлом, который её начал: его счётчики не трогаем
+        if (updated > 0) {
+            try {
+                Site site = siteRepository.findByUrl(progress.getSiteUrl());
+                progress.setPagesSaved(site.getPageCount());
+                progress.setLemmaCount(site.getLemmaCount());
+            } catch (Exception e) {
+                log.warn("Ошибка при чтении счётчиков сайта {}: {}", progress.getSiteUrl(), e.getMessage());
+            }
+        }
+    }
+}
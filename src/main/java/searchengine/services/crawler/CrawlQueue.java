@@ -0,0 +1,106 @@
+package searchengine.services.crawler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.repositories.CrawlQueueRepository;
+import searchengine.services.PageBatchWriter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общая очередь обхода для распределённого режима (crawler.distributed). Открывает SharedFrontier
+ * для обходов этого узла и каждую треть leaseTime продлевает их аренды одним UPDATE, предварительно
+ * отметив обработанные адреса. Узел, который перестал продлевать аренды, считается упавшим.
+ */
+@Slf4j
+@Component
+public class CrawlQueue {
+
+    private static final int MAX_NODE_ID_LENGTH = 64;  // crawl_queue.lease_owner
+
+    private final CrawlQueueRepository repository;
+    private final PageBatchWriter pageBatchWriter;
+    private final String nodeId;
+    private final long leaseTime;
+    private final int deleteBatchSize;
+    private final Set<SharedFrontier> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+    public CrawlQueue(CrawlQueueRepository repository, PageBatchWriter pageBatchWriter, CrawlerSettings settings) {
+        this.repository = repository;
+        this.pageBatchWriter = pageBatchWriter;
+        this.leaseTime = settings.getLeaseTime();
+        this.deleteBatchSize = settings.getGcBatchSize();
+        String name = !settings.getNodeId().isBlank() ? settings.getNodeId()
+                : ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.nodeId = name.length() > MAX_NODE_ID_LENGTH ? name.substring(name.length() - MAX_NODE_ID_LENGTH) : name;
+        if (settings.isDistributed()) {
+            long interval = Math.max(1, leaseTime / 3);
+            heartbeat.scheduleWithFixedDelay(this::extendLeases, interval, interval, TimeUnit.MILLISECONDS);
+            log.info("Распределённый обход: узел {}, аренда адресов {} мс.", nodeId, leaseTime);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public SharedFrontier open(int siteId, int generation) {
+        SharedFrontier frontier = new SharedFrontier(repository, pageBatchWriter, siteId, generation, nodeId, leaseTime);
+        active.add(frontier);
+        return frontier;
+    }
+
+    // released - обход остановлен, и необработанные адреса возвращаются другим узлам
+    public void close(SharedFrontier frontier, boolean released) {
+        try {
+            if (released) {
+                frontier.release();
+            } else {
+                frontier.commit();
+            }
+        } finally {
+            active.remove(frontier);
+        }
+    }
+
+    public boolean hasOpen(int siteId, int generation) {
+        return repository.hasOpen(siteId, generation);
+    }
+
+    // Очередь сайта больше не нужна: новое поколение активно или начинается новая сборка
+    public void clear(int siteId) {
+        int deleted = 0;
+        for (int batch; (batch = repository.deleteBySite(siteId, deleteBatchSize)) > 0; ) {
+            deleted += batch;
+        }
+        log.debug("Удалено строк очереди сайта {}: {}.", siteId, deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    private void extendLeases() {
+        if (active.isEmpty()) {
+            return;
+        }
+        try {
+            repository.extendLeases(nodeId, System.currentTimeMillis() + leaseTime);
+            for (SharedFrontier frontier : active) {
+                frontier.commit();
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка при продлении аренды адресов узла {}: {}", nodeId, e.getMessage());
+        }
+    }
+}
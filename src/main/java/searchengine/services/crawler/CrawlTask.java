@@ -0,0 +1,5 @@
+package searchengine.services.crawler;
+
+// Элемент очереди обхода: адрес страницы и её глубина относительно главной страницы сайта
+public record CrawlTask(String url, int depth) {
+}
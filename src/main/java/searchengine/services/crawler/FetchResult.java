@@ -0,0 +1,45 @@
+package searchengine.services.crawler;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Результат одного HTTP-обмена: код ответа, тип содержимого, тело и заголовки.
+ * Для медиафайлов и неподдерживаемых типов тело не загружается и равно пустому массиву.
+ * url - адрес в написании сервера, если ответ пришёл с того же адреса с точностью до «/» в конце, иначе запрошенный.
+ */
+public record FetchResult(String url, int statusCode, String contentType, byte[] body, Map<String, String> headers) {
+
+    private static final Pattern CHARSET = Pattern.compile("(?i)charset=\\s*\"?([^\\s;\"]+)");
+
+    public static final int NOT_MODIFIED = 304;
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    // Ответ на условный GET: страница не менялась, тела нет
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
+
+    // Те же типы, что Jsoup разбирает по умолчанию
+    public boolean isHtml() {
+        return isHtmlType(contentType);
+    }
+
+    // Кодировка из Content-Type; null - определить по BOM или meta-тегу при разборе
+    public String charset() {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CHARSET.matcher(contentType);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    public static boolean isHtmlType(String contentType) {
+        return contentType == null || contentType.startsWith("text/") || contentType.startsWith("application/xml")
+                || contentType.startsWith("application/xhtml+xml") || contentType.matches("application/[^;]+\\+xml.*");
+    }
+}
@@ -0,0 +1,143 @@
+package searchengine.services.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик запросов по хостам. Для каждого хоста ограничивает число одновременных запросов
+ * и выдерживает интервал между их началом. Интервал подстраивается под хост: растёт вдвое
+ * при ошибках (5xx, 429, сетевые сбои) и при средней задержке ответа выше hostTargetLatency,
+ * постепенно возвращается к hostMinDelay на успешных ответах. Retry-After откладывает следующий
+ * запрос к хосту. Общее число запросов по всем хостам ограничено maxConcurrentFetches.
+ */
+@Component
+public class HostScheduler {
+
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final CrawlerSettings settings;
+    private final CrawlMetrics metrics;
+    private final Semaphore fetchPermits;
+    private final ConcurrentHashMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    public HostScheduler(CrawlerSettings settings, CrawlMetrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        this.fetchPermits = new Semaphore(settings.getMaxConcurrentFetches());
+    }
+
+    @FunctionalInterface
+    public interface HttpCall {
+        FetchResult execute() throws IOException;
+    }
+
+    public FetchResult call(String url, HttpCall call) throws IOException {
+        HostState host = hosts.computeIfAbsent(hostOf(url), key -> new HostState());
+        long queued = System.nanoTime();
+        try {
+            host.connections.acquire();
+            try {
+                host.awaitTurn();
+                fetchPermits.acquire();
+                try {
+                    long started = System.nanoTime();
+                    metrics.hostWaited(started - queued);
+                    FetchResult result;
+                    try {
+                        result = call.execute();
+                    } catch (IOException e) {
+                        host.onError(0);
+                        throw e;
+                    }
+                    host.onResponse(result, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                    return result;
+                } finally {
+                    fetchPermits.release();
+                }
+            } finally {
+                host.connections.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запрос к " + url + " прерван");
+        }
+    }
+
+    public static boolean isThrottled(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    private static String hostOf(String url) {
+        URI uri = URI.create(url);
+        String host = uri.getHost() == null ? url : uri.getHost().toLowerCase(Locale.ROOT);
+        return uri.getPort() == -1 ? host : host + ":" + uri.getPort();
+    }
+
+    // Значение Retry-After: число секунд или HTTP-дата; 0, если заголовка нет или он не разобран
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private class HostState {
+        private final Semaphore connections = new Semaphore(settings.getHostMaxConnections());
+        private long delay = settings.getHostMinDelay();
+        private long nextStart;  // System.nanoTime(), раньше которого нельзя начинать запрос
+        private double latency;
+
+        void awaitTurn() throws InterruptedException {
+            long start;
+            synchronized (this) {
+                long now = System.nanoTime();
+                start = Math.max(now, nextStart);
+                nextStart = start + TimeUnit.MILLISECONDS.toNanos(delay);
+            }
+            long wait = start - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        synchronized void onResponse(FetchResult result, long latencyMs) {
+            latency = latency == 0 ? latencyMs : latency * (1 - LATENCY_WEIGHT) + latencyMs * LATENCY_WEIGHT;
+            if (result.statusCode() >= 500 || isThrottled(result.statusCode())) {
+                onError(parseRetryAfter(result.headers().get("Retry-After")));
+            } else if (latency > settings.getHostTargetLatency()) {
+                delay = Math.min(settings.getHostMaxDelay(), delay + delay / 2);
+            } else {
+                delay = Math.max(settings.getHostMinDelay(), delay - (delay - settings.getHostMinDelay()) / 4);
+            }
+        }
+
+        synchronized void onError(long retryAfterMs) {
+            delay = Math.min(settings.getHostMaxDelay(), Math.max(delay * 2, settings.getHostMinDelay() * 2));
+            if (retryAfterMs > 0) {
+                long pause = TimeUnit.MILLISECONDS.toNanos(Math.min(retryAfterMs, settings.getMaxRetryAfter()));
+                nextStart = Math.max(nextStart, System.nanoTime() + pause);
+            }
+        }
+    }
+}
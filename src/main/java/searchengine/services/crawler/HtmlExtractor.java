@@ -0,0 +1,443 @@
+package searchengine.services.crawler;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Извлечение из HTML за один проход без построения DOM: заголовок, видимый текст, ссылки на страницы
+ * сайта и медиафайлы (изображения, скрипты, а из link - только стили и значки). Разбирается не больше
+ * maxBytes начала страницы. Теги читаются по месту, из атрибутов материализуются только href и src
+ * нужных элементов; содержимое script и style пропускается. Текст совпадает с body().text() Jsoup
+ * с точностью до пробелов между блоками, адреса разрешаются так же, как Element.absUrl, с учётом
+ * первого тега base.
+ */
+public final class HtmlExtractor {
+
+    private static final int CHARSET_SNIFF_BYTES = 5 * 1024;  // Столько же просматривает Jsoup в поисках meta charset
+    private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)");
+
+    // Элементы, границы которых разделяют слова текста (как isBlock и br в Jsoup)
+    private static final Set<String> BLOCK_TAGS = Set.of("address", "article", "aside", "blockquote", "body", "br",
+            "caption", "center", "dd", "details", "dir", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer",
+            "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hgroup", "hr", "html", "li", "main", "menu", "nav",
+            "ol", "option", "p", "pre", "section", "summary", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+    // Элементы, которые могут стоять в head; любой другой начинает body
+    private static final Set<String> HEAD_TAGS = Set.of("base", "basefont", "bgsound", "link", "meta", "noscript",
+            "noframes", "script", "style", "template", "title");
+
+    private HtmlExtractor() {
+    }
+
+    // type - "image", "css" или "js"; url нормализован
+    public record MediaLink(String url, String type) {
+    }
+
+    // html - разобранное начало страницы для хранения, links - абсолютные адреса страниц того же сайта
+    public record ExtractedPage(String html, String title, String text, List<String> links, List<MediaLink> media) {
+    }
+
+    /**
+     * charset - кодировка из Content-Type или null: тогда она определяется по BOM и meta-тегу, иначе UTF-8.
+     * Ссылки оставляются только ведущие на сайт siteUrl (UrlNormalizer.isWithinSite); нормализует их SiteCrawler
+     * при постановке в очередь.
+     */
+    public static ExtractedPage extract(byte[] body, String charset, String baseUri, String siteUrl, int maxBytes) {
+        int length = Math.min(body.length, maxBytes);
+        int bom = bomLength(body, length);
+        Charset decoding = bom > 0 ? bomCharset(body) : detectCharset(body, length, charset);
+        return extract(decode(body, bom, length, decoding, length < body.length), baseUri, siteUrl);
+    }
+
+    // Уже декодированный HTML, например сохранённый прошлым обходом
+    public static ExtractedPage extract(String html, String baseUri, String siteUrl) {
+        Scanner scanner = new Scanner(html, baseUri, siteUrl);
+        scanner.scan();
+        return new ExtractedPage(html, scanner.title != null ? scanner.title : "", scanner.text.toString().trim(),
+                scanner.links, scanner.media);
+    }
+
+    /**
+     * Граница maxBytes может прийтись на середину многобайтного символа. Обрезанное начало декодируется
+     * как незаконченный поток: неполный символ в конце отбрасывается целиком, а не превращается в U+FFFD.
+     * Ошибочные байты внутри страницы заменяются, как в new String().
+     */
+    private static String decode(byte[] body, int from, int to, Charset charset, boolean truncated) {
+        if (!truncated) {
+            return new String(body, from, to - from, charset);
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.allocate((int) Math.ceil((to - from) * (double) decoder.maxCharsPerByte()));
+        decoder.decode(ByteBuffer.wrap(body, from, to - from), out, false);
+        return out.flip().toString();
+    }
+
+    private static int bomLength(byte[] body, int length) {
+        if (length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+            return 3;
+        }
+        if (length >= 2 && ((body[0] & 0xFF) == 0xFE && (body[1] & 0xFF) == 0xFF
+                || (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xFE)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static Charset bomCharset(byte[] body) {
+        return switch (body[0] & 0xFF) {
+            case 0xFE -> StandardCharsets.UTF_16BE;
+            case 0xFF -> StandardCharsets.UTF_16LE;
+            default -> StandardCharsets.UTF_8;
+        };
+    }
+
+    private static Charset detectCharset(byte[] body, int length, String declared) {
+        Charset charset = forName(declared);
+        if (charset != null) {
+            return charset;
+        }
+        Matcher meta = META_CHARSET.matcher(new String(body, 0, Math.min(length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1));
+        charset = meta.find() ? forName(meta.group(1)) : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    private static Charset forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;  // Неизвестная или некорректная кодировка
+        }
+    }
+
+    // Состояние одного прохода по странице
+    private static final class Scanner {
+
+        private final String html;
+        private final int length;
+        private final String siteUrl;
+        private final StringBuilder text;
+        private final List<String> links = new ArrayList<>();
+        private final List<MediaLink> media = new ArrayList<>();
+        private String baseUri;
+        private boolean baseSet;
+        private boolean inHead;
+        private String title;
+        private String rel;  // rel последнего тега link
+        private int pos;
+
+        Scanner(String html, String baseUri, String siteUrl) {
+            this.html = html;
+            this.length = html.length();
+            this.baseUri = baseUri;
+            this.siteUrl = UrlNormalizer.normalize(siteUrl);
+            this.text = new StringBuilder(Math.min(length / 4, 64 * 1024));
+        }
+
+        void scan() {
+            while (pos < length) {
+                int tag = html.indexOf('<', pos);
+                int end = tag < 0 ? length : tag;
+                if (end > pos) {
+                    bodyText(pos, end);
+                }
+                if (tag < 0) {
+                    return;
+                }
+                pos = tag;
+                markup();
+            }
+        }
+
+        private void markup() {
+            char next = pos + 1 < length ? html.charAt(pos + 1) : 0;
+            if (next == '!') {
+                pos = html.startsWith("<!--", pos) ? skipPast("-->", pos + 4) : skipPast(">", pos + 2);
+            } else if (next == '?') {
+                pos = skipPast(">", pos + 2);
+            } else if (next == '/' && pos + 2 < length && isLetter(html.charAt(pos + 2))) {
+                endTag();
+            } else if (isLetter(next)) {
+                startTag();
+            } else {
+                bodyText(pos, pos + 1);  // Одиночный '<' - обычный символ текста
+                pos++;
+            }
+        }
+
+        private void endTag() {
+            int nameEnd = nameEnd(pos + 2);
+            String name = html.substring(pos + 2, nameEnd).toLowerCase(Locale.ROOT);
+            pos = skipPast(">", nameEnd);
+            if (name.equals("head")) {
+                inHead = false;
+            } else if (BLOCK_TAGS.contains(name)) {
+                separate();
+            }
+        }
+
+        private void startTag() {
+            int nameEnd = nameEnd(pos + 1);
+            String name = html.substring(pos + 1, nameEnd).toLowerCase(Locale.ROOT);
+            String attribute = switch (name) {
+                case "a", "link", "base" -> "href";
+                case "img", "script" -> "src";
+                default -> null;
+            };
+            String value = attributes(nameEnd, attribute, name.equals("link"));  // Сдвигает pos за конец тега
+
+            if (name.equals("head")) {
+                inHead = true;
+            } else if (inHead && !HEAD_TAGS.contains(name)) {
+                inHead = false;
+            }
+            if (BLOCK_TAGS.contains(name)) {
+                separate();
+            }
+            if (value != null) {
+                link(name, value);
+            }
+            switch (name) {
+                case "script", "style" -> pos = endOf(name);
+                case "title" -> {
+                    int close = closingTag(name, pos);
+                    if (title == null) {
+                        title = normalize(html.substring(pos, close)).trim();
+                    }
+                    pos = close;
+                }
+                case "textarea" -> {
+                    int close = closingTag(name, pos);
+                    bodyText(pos, close);
+                    pos = close;
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void link(String tag, String value) {
+            String url = StringUtil.resolve(baseUri, value);
+            switch (tag) {
+                case "a" -> {
+                    if (UrlNormalizer.isWithinSite(UrlNormalizer.normalize(url), siteUrl)) {
+                        links.add(url);
+                    }
+                }
+                case "base" -> {
+                    if (!baseSet && !url.isEmpty()) {
+                        baseUri = url;
+                        baseSet = true;
+                    }
+                }
+                case "img" -> addMedia(url, "image");
+                case "link" -> {
+                    // rel=next, canonical, alternate и подобные ведут на страницы, а не на медиафайлы
+                    String type = linkMediaType(rel);
+                    if (type != null) {
+                        addMedia(url, type);
+                    }
+                }
+                case "script" -> addMedia(url, "js");
+                default -> {
+                }
+            }
+        }
+
+        private void addMedia(String url, String type) {
+            String normalized = UrlNormalizer.normalize(url);
+            if (normalized != null) {
+                media.add(new MediaLink(normalized, type));
+            }
+        }
+
+        // Тип медиафайла по значению rel тега link или null
+        private static String linkMediaType(String rel) {
+            if (rel == null) {
+                return null;
+            }
+            String type = null;
+            for (String token : rel.toLowerCase(Locale.ROOT).split("[ \t\n\r\f]+")) {
+                if (token.equals("stylesheet")) {
+                    return "css";
+                }
+                if (token.equals("icon") || token.equals("apple-touch-icon")) {
+                    type = "image";
+                }
+            }
+            return type;
+        }
+
+        // Пропускает атрибуты до конца тега; возвращает значение wanted (первое, как в Jsoup) или null, в том числе для незакрытого тега.
+        // withRel - заодно запомнить в rel значение одноимённого атрибута
+        private String attributes(int from, String wanted, boolean withRel) {
+            String value = null;
+            rel = null;
+            int i = from;
+            while (i < length) {
+                char c = html.charAt(i);
+                if (c == '>') {
+                    pos = i + 1;
+                    return value;
+                }
+                if (isWhitespace(c) || c == '/') {
+                    i++;
+                    continue;
+                }
+                int nameStart = i;
+                while (i < length && !isWhitespace(html.charAt(i)) && "/>=".indexOf(html.charAt(i)) < 0) {
+                    i++;
+                }
+                int nameEnd = i;
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i >= length || html.charAt(i) != '=') {
+                    continue;  // Атрибут без значения
+                }
+                i++;
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                int valueStart;
+                int valueEnd;
+                if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                    valueStart = i + 1;
+                    valueEnd = html.indexOf(html.charAt(i), valueStart);
+                    valueEnd = valueEnd < 0 ? length : valueEnd;
+                    i = Math.min(length, valueEnd + 1);
+                } else {
+                    valueStart = i;
+                    while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+                if (value == null && wanted != null && nameEnd - nameStart == wanted.length()
+                        && html.regionMatches(true, nameStart, wanted, 0, wanted.length())) {
+                    value = unescape(html.substring(valueStart, valueEnd), true);
+                } else if (withRel && rel == null && nameEnd - nameStart == 3 && html.regionMatches(true, nameStart, "rel", 0, 3)) {
+                    rel = unescape(html.substring(valueStart, valueEnd), true);
+                }
+            }
+            pos = length;
+            rel = null;
+            return null;  // Тег оборван концом страницы: как и в Jsoup, он не создаётся
+        }
+
+        private void bodyText(int from, int to) {
+            if (inHead) {
+                if (isBlank(from, to)) {
+                    return;
+                }
+                inHead = false;  // Текст в head, как и в Jsoup, начинает body
+            }
+            int amp = html.indexOf('&', from);
+            if (amp >= 0 && amp < to) {
+                String decoded = Parser.unescapeEntities(html.substring(from, to), false);
+                appendNormalized(text, decoded, 0, decoded.length());
+            } else {
+                appendNormalized(text, html, from, to);  // Без копии участка страницы
+            }
+        }
+
+        // Граница блока: слова по разные стороны не склеиваются
+        private void separate() {
+            if (!text.isEmpty() && text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+        }
+
+        private int endOf(String name) {
+            return skipPast(">", closingTag(name, pos));
+        }
+
+        // Начало закрывающего тега name или конец страницы
+        private int closingTag(String name, int from) {
+            int i = from;
+            while ((i = html.indexOf("</", i)) >= 0) {
+                int after = i + 2 + name.length();
+                if (html.regionMatches(true, i + 2, name, 0, name.length())
+                        && (after >= length || isWhitespace(html.charAt(after)) || html.charAt(after) == '>' || html.charAt(after) == '/')) {
+                    return i;
+                }
+                i += 2;
+            }
+            return length;
+        }
+
+        private int skipPast(String terminator, int from) {
+            int i = html.indexOf(terminator, Math.min(from, length));
+            return i < 0 ? length : i + terminator.length();
+        }
+
+        private int nameEnd(int from) {
+            int i = from;
+            while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '/' && html.charAt(i) != '>') {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean isBlank(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (!isWhitespace(html.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String normalize(String value) {
+            StringBuilder normalized = new StringBuilder(value.length());
+            String decoded = unescape(value, false);
+            appendNormalized(normalized, decoded, 0, decoded.length());
+            return normalized.toString();
+        }
+    }
+
+    // Пробельные символы сводятся к одному пробелу, невидимые отбрасываются - как в Element.text()
+    private static void appendNormalized(StringBuilder out, String value, int from, int to) {
+        boolean space = !out.isEmpty() && out.charAt(out.length() - 1) == ' ';
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (isWhitespace(c) || c == '\u00A0') {
+                if (!space && !out.isEmpty()) {
+                    out.append(' ');
+                    space = true;
+                }
+            } else if (c != '\u200B' && c != '\u00AD') {
+                out.append(c);
+                space = false;
+            }
+        }
+    }
+
+    private static String unescape(String value, boolean inAttribute) {
+        return value.indexOf('&') >= 0 ? Parser.unescapeEntities(value, inAttribute) : value;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+}
@@ -0,0 +1,60 @@
+package searchengine.services.crawler;
+
+import searchengine.repositories.IndexBatchRepository.KnownPage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Страницы сайта, сохранённые прошлым обходом. При инкрементальной переиндексации по ним
+ * отправляется условный GET и сравнивается хэш содержимого; страницы, до которых обход
+ * так и не дошёл, после обхода удаляются. Адреса сравниваются по UrlNormalizer.key(): страница,
+ * сохранённая как /docs, узнаётся и под адресом /docs/.
+ */
+public class KnownPages {
+
+    private final Map<String, KnownPage> pages = new HashMap<>();
+    private final Set<String> unseen = ConcurrentHashMap.newKeySet();
+    private final List<Integer> duplicateIds = new ArrayList<>();  // Повторные строки с тем же адресом
+
+    public KnownPages(List<KnownPage> knownPages) {
+        for (KnownPage page : knownPages) {
+            if (pages.putIfAbsent(UrlNormalizer.key(page.path()), page) != null) {
+                duplicateIds.add(page.id());
+            }
+        }
+        unseen.addAll(pages.keySet());
+    }
+
+    public static KnownPages empty() {
+        return new KnownPages(List.of());
+    }
+
+    public KnownPage get(String url) {
+        return pages.get(UrlNormalizer.key(url));
+    }
+
+    // Отмечает адрес встреченным в текущем обходе; true, если страница была сохранена раньше
+    public boolean markSeen(String url) {
+        String key = UrlNormalizer.key(url);
+        unseen.remove(key);
+        return pages.containsKey(key);
+    }
+
+    public int size() {
+        return pages.size() + duplicateIds.size();
+    }
+
+    // Страницы, которых больше нет на сайте; вызывается после завершения обхода
+    public List<Integer> unseenIds() {
+        List<Integer> ids = new ArrayList<>(duplicateIds);
+        for (String url : unseen) {
+            ids.add(pages.get(url).id());
+        }
+        return ids;
+    }
+}
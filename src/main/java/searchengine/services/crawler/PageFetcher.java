@@ -0,0 +1,109 @@
+package searchengine.services.crawler;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HTTP-клиент обхода. Каждая страница загружается одним запросом: сначала читаются заголовки,
+ * и тело скачивается только для HTML. Медиафайлы проверяются запросом HEAD.
+ * Все запросы проходят через HostScheduler; ответы 429/503 повторяются до maxRetries раз.
+ * При переиндексации страница запрашивается условно (If-None-Match / If-Modified-Since),
+ * и неизменённая страница отвечает 304 без тела.
+ */
+@Component
+public class PageFetcher {
+
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    private final CrawlerSettings settings;
+    private final HostScheduler hostScheduler;
+    private final CrawlMetrics metrics;
+
+    public PageFetcher(CrawlerSettings settings, HostScheduler hostScheduler, CrawlMetrics metrics) {
+        this.settings = settings;
+        this.hostScheduler = hostScheduler;
+        this.metrics = metrics;
+    }
+
+    public FetchResult fetch(String url) throws IOException {
+        return execute(url, Connection.Method.GET, true, Map.of());
+    }
+
+    // etag и lastModified - значения из прошлого ответа, null если их не было
+    public FetchResult fetchIfModified(String url, String etag, String lastModified) throws IOException {
+        Map<String, String> conditions = new TreeMap<>();
+        if (etag != null) {
+            conditions.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            conditions.put("If-Modified-Since", lastModified);
+        }
+        return execute(url, Connection.Method.GET, true, conditions);
+    }
+
+    public FetchResult probe(String url) throws IOException {
+        FetchResult result = execute(url, Connection.Method.HEAD, false, Map.of());
+        if (result.statusCode() == METHOD_NOT_ALLOWED) {
+            // Сервер не поддерживает HEAD: читаем только заголовки ответа на GET
+            result = execute(url, Connection.Method.GET, false, Map.of());
+        }
+        return result;
+    }
+
+    private FetchResult execute(String url, Connection.Method method, boolean readBody, Map<String, String> requestHeaders) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            FetchResult result = hostScheduler.call(url, () -> exchange(url, method, readBody, requestHeaders));
+            if (!HostScheduler.isThrottled(result.statusCode()) || attempt >= settings.getMaxRetries()) {
+                return result;
+            }
+        }
+    }
+
+    private FetchResult exchange(String url, Connection.Method method, boolean readBody, Map<String, String> requestHeaders) throws IOException {
+        long started = System.nanoTime();
+        try {
+            Connection.Response response = connect(url).headers(requestHeaders).method(method).execute();
+            byte[] body = new byte[0];
+            if (!readBody || !FetchResult.isHtmlType(response.contentType())) {
+                response.bodyStream().close();  // Тело медиафайла или неподдерживаемого типа не скачиваем
+            } else {
+                body = response.bodyAsBytes();
+            }
+            metrics.fetched(method.name(), response.statusCode(), System.nanoTime() - started, body.length);
+            return toResult(url, response, body);
+        } catch (IOException | RuntimeException e) {
+            metrics.fetchFailed(method.name(), System.nanoTime() - started, e);
+            throw e;
+        }
+    }
+
+    private Connection connect(String url) {
+        return Jsoup.connect(url)
+                .userAgent(settings.getUserAgent())
+                .referrer(settings.getReferrer())
+                .timeout(settings.getTimeout())
+                .maxBodySize(settings.getMaxBodySize())
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .followRedirects(true);
+    }
+
+    private FetchResult toResult(String url, Connection.Response response, byte[] body) {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        return new FetchResult(servedUrl(url, response), response.statusCode(), response.contentType(), body, headers);
+    }
+
+    // Написание адреса от сервера (например, /docs/ после перенаправления с /docs), если это та же страница.
+    // Перенаправление на другую страницу оставляет запрошенный адрес: та будет сохранена под своим
+    private static String servedUrl(String requested, Connection.Response response) {
+        String served = UrlNormalizer.normalize(response.url().toString());
+        return served != null && UrlNormalizer.key(served).equals(UrlNormalizer.key(requested)) ? served : requested;
+    }
+}
@@ -0,0 +1,18 @@
+package searchengine.services.crawler;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface PageProcessor {
+
+    /**
+     * Загружает страницу одним HTTP-запросом. Вызывается на виртуальном потоке и может блокироваться на сетевом вводе-выводе.
+     */
+    FetchResult fetch(CrawlTask task) throws IOException;
+
+    /**
+     * Разбирает и сохраняет загруженную страницу, возвращает найденные на ней ссылки. Вызывается на пуле разбора.
+     * Блокирующие запросы (проверка медиафайлов) отправляются через crawler.submitIo().
+     */
+    List<String> process(CrawlTask task, FetchResult result, SiteCrawler crawler) throws IOException;
+}
@@ -0,0 +1,141 @@
+package searchengine.services.crawler;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.repositories.CrawlQueueRepository;
+import searchengine.repositories.CrawlQueueRepository.LeasedUrl;
+import searchengine.repositories.CrawlQueueRepository.NewUrl;
+import searchengine.services.PageBatchWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Очередь обхода одного поколения сайта в общей таблице crawl_queue: SiteCrawler берёт из неё адреса
+ * в аренду порциями и ставит туда найденные ссылки. Обработанный адрес отмечается DONE только в commit(),
+ * после сброса буфера PageBatchWriter: упавший узел не теряет страницы, которые успел загрузить,
+ * но не записал, - их аренда истечёт, и адрес обработает другой узел.
+ */
+@Slf4j
+public class SharedFrontier {
+
+    private static final String MEDIA_KEY_PREFIX = "media ";
+    private static final long RECOUNT_INTERVAL_MS = 1000;
+
+    private final CrawlQueueRepository repository;
+    private final PageBatchWriter pageBatchWriter;
+    private final int siteId;
+    private final int generation;
+    private final String owner;
+    private final long leaseTime;
+    private final Map<String, Long> leasedIds = new ConcurrentHashMap<>();  // Адрес -> строка очереди
+    private final Queue<Long> completed = new ConcurrentLinkedQueue<>();
+    private volatile int scheduled;
+    private volatile long countedAt;
+
+    SharedFrontier(CrawlQueueRepository repository, PageBatchWriter pageBatchWriter, int siteId, int generation,
+                   String owner, long leaseTime) {
+        this.repository = repository;
+        this.pageBatchWriter = pageBatchWriter;
+        this.siteId = siteId;
+        this.generation = generation;
+        this.owner = owner;
+        this.leaseTime = leaseTime;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public List<CrawlTask> lease(int limit) {
+        long now = System.currentTimeMillis();
+        List<LeasedUrl> leased = repository.lease(siteId, generation, owner, now, now + leaseTime, limit);
+        List<CrawlTask> tasks = new ArrayList<>(leased.size());
+        int expired = 0;
+        for (LeasedUrl url : leased) {
+            leasedIds.put(url.url(), url.id());
+            tasks.add(new CrawlTask(url.url(), url.depth()));
+            expired += url.expired() ? 1 : 0;
+        }
+        if (expired > 0) {
+            log.info("Узел {} забрал {} адресов с истёкшей арендой (сайт {}).", owner, expired, siteId);
+        }
+        return tasks;
+    }
+
+    public void offer(List<CrawlTask> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<NewUrl> urls = new ArrayList<>(tasks.size());
+        for (CrawlTask task : tasks) {
+            // Уникален ключ, а не написание: /docs и /docs/ не попадут в очередь дважды
+            urls.add(new NewUrl(VisitedUrlSet.hash(UrlNormalizer.key(task.url())), task.url(), task.depth()));
+        }
+        repository.enqueue(siteId, generation, urls);
+    }
+
+    // Ключ медиафайла не совпадает с ключом страницы с тем же адресом: иначе страница не попала бы в очередь
+    public boolean claimMedia(String url) {
+        return repository.claimMedia(siteId, generation, VisitedUrlSet.hash(MEDIA_KEY_PREFIX + UrlNormalizer.key(url)), url);
+    }
+
+    // Страница обработана этим узлом; в базе отмечается при следующем commit()
+    public void done(String url) {
+        Long id = leasedIds.remove(url);
+        if (id != null) {
+            completed.add(id);
+        }
+    }
+
+    // Записывает буфер страниц и только потом отмечает обработанные адреса
+    public void commit() {
+        if (completed.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Long id; (id = completed.poll()) != null; ) {
+            ids.add(id);
+        }
+        try {
+            pageBatchWriter.flush();
+            repository.markDone(owner, ids);
+        } catch (RuntimeException e) {
+            completed.addAll(ids);  // Иначе строки остались бы арендованными навсегда: пульс продлевает аренду
+            throw e;
+        }
+    }
+
+    // Во всём поколении не осталось ни ждущих, ни арендованных адресов
+    public boolean isDrained() {
+        commit();
+        return !repository.hasOpen(siteId, generation);
+    }
+
+    /**
+     * Страниц в очереди поколения по всем узлам - для лимита maxPages. COUNT(*) дорожает с ростом очереди,
+     * поэтому пересчитывается не чаще раза в секунду; между пересчётами SiteCrawler досчитывает свои ссылки сам.
+     */
+    public int scheduled() {
+        long now = System.currentTimeMillis();
+        if (now - countedAt >= RECOUNT_INTERVAL_MS) {
+            scheduled = repository.count(siteId, generation);
+            countedAt = now;
+        }
+        return scheduled;
+    }
+
+    // Остановленный обход возвращает в очередь адреса, которые не успел обработать
+    void release() {
+        commit();
+        repository.release(owner, siteId, generation);
+        leasedIds.clear();
+    }
+}
@@ -0,0 +1,322 @@
+package searchengine.services.crawler;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlerSettings.CrawlLimits;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход одного сайта: очередь адресов (frontier) и потокобезопасное множество посещённых адресов.
+ * Адреса приводятся к одному написанию (UrlNormalizer) и загружаются в нём; посещённые хранятся хэшами
+ * ключей UrlNormalizer.key() (VisitedUrlSet), так что /docs и /docs/ - одна страница.
+ * Поток, вызвавший crawl(), раздаёт задачи из очереди: загрузка идёт на виртуальных потоках
+ * (лимиты хоста и общий лимит соблюдает HostScheduler), разбор и сохранение - на пуле разбора.
+ * Разрешение сайта держится от загрузки до конца разбора страницы: у сайта не больше limits.parallelism()
+ * страниц в работе, и загрузка не обгоняет разбор, накапливая тела ответов в очереди пула.
+ * Метод crawl() возвращает управление только тогда, когда очередь пуста и все взятые в работу страницы
+ * и медиафайлы обработаны.
+ * После остановки (CancellationToken) новые загрузки не начинаются, адреса из очереди отбрасываются,
+ * ждущие запросы прерываются; уже загруженные страницы разбираются и сохраняются.
+ * Необработанные адреса (pendingSnapshot) сохраняются контрольными точками, и прерванный обход
+ * можно продолжить через resume().
+ * С общей очередью (useSharedFrontier) адреса берутся из неё в аренду порциями по limits.parallelism(),
+ * найденные ссылки ставятся туда же, а обход заканчивается, когда очередь поколения опустела на всех узлах.
+ */
+@Slf4j
+public class SiteCrawler {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final String rootUrl;
+    private final CrawlLimits limits;
+    private final PageProcessor processor;
+    private final CrawlExecutors executors;
+    private final Semaphore sitePermits;
+    private final CrawlProgress progress;
+    private final CancellationToken cancellation;
+
+    private final BlockingQueue<CrawlTask> frontier = new LinkedBlockingQueue<>();
+    private final VisitedUrlSet visitedUrls = new VisitedUrlSet();
+    private final VisitedUrlSet visitedMedia = new VisitedUrlSet();  // Отдельно: ссылка на страницу из link не закрывает её для обхода
+    private final Map<String, Integer> pendingPages = new ConcurrentHashMap<>();  // Адрес -> глубина, пока страница не обработана
+    private final AtomicInteger pending = new AtomicInteger();  // В очереди + в обработке
+    private final AtomicInteger scheduledPages = new AtomicInteger();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final Set<Thread> fetchThreads = ConcurrentHashMap.newKeySet();  // Загрузки страниц, прерываются при остановке
+
+    private volatile Exception rootError;
+    private volatile boolean resumed;
+    private volatile SharedFrontier shared;
+
+    public SiteCrawler(String rootUrl, CrawlLimits limits, PageProcessor processor, CrawlExecutors executors,
+                       CrawlProgress progress, CancellationToken cancellation) {
+        this.rootUrl = UrlNormalizer.normalize(rootUrl);
+        this.limits = limits;
+        this.processor = processor;
+        this.executors = executors;
+        this.sitePermits = new Semaphore(limits.parallelism());
+        this.progress = progress;
+        this.cancellation = cancellation;
+        progress.setQueueDepth(frontier::size);
+    }
+
+    public void crawl() throws InterruptedException {
+        Runnable interrupter = this::interruptFetches;
+        cancellation.onCancel(interrupter);
+        try {
+            if (shared != null) {
+                // Главную страницу ставит каждый узел: уникальный ключ очереди оставит одну строку
+                markVisited(rootUrl);
+                shared.offer(List.of(new CrawlTask(rootUrl, 0)));
+            } else if (!resumed) {
+                schedule(rootUrl, 0);
+            }
+            finishIfIdle();
+            while (finished.getCount() > 0) {
+                if (shared != null && frontier.isEmpty()) {
+                    leaseShared();
+                    if (finished.getCount() == 0) {
+                        break;
+                    }
+                }
+                CrawlTask task = frontier.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    continue;
+                }
+                if (cancellation.isCancelled()) {
+                    complete();  // Адрес из очереди отбрасывается
+                    continue;
+                }
+                // Разрешение сайта берётся здесь, чтобы очередь не превращалась в тысячи ожидающих потоков
+                sitePermits.acquire();
+                executors.fetchExecutor().execute(() -> fetchStage(task));
+            }
+        } finally {
+            cancellation.removeListener(interrupter);
+        }
+    }
+
+    /**
+     * Продолжение прерванного обхода; вызывается до crawl(). pages и media - уже сохранённые страницы
+     * и медиафайлы, frontier - адреса из контрольной точки (адрес -> глубина), которые ещё не обработаны.
+     * В лимит limits.maxPages() идут только страницы, как и в непрерывном обходе.
+     */
+    public void resume(Collection<String> pages, Collection<String> media, Map<String, Integer> frontier) {
+        resumed = true;
+        // Сохранённый адрес закрыт и для страниц, и для медиафайлов, иначе ссылка другого вида сохранила бы его снова
+        for (Collection<String> saved : List.of(pages, media)) {
+            saved.forEach(url -> {
+                markVisited(url);
+                visitedMedia.add(UrlNormalizer.key(url));
+            });
+        }
+        scheduledPages.set(pages.size());
+        frontier.forEach((url, depth) -> {
+            if (markVisited(url)) {
+                scheduledPages.incrementAndGet();
+                enqueue(new CrawlTask(url, depth));
+            }
+        });
+    }
+
+    // Распределённый режим; вызывается до crawl(). Контрольные точки тогда не нужны: очередь и так в базе
+    public void useSharedFrontier(SharedFrontier shared) {
+        this.shared = shared;
+    }
+
+    // Адреса, поставленные в очередь, но ещё не обработанные; страницы, обработанные до снимка, уже переданы в PageBatchWriter
+    public Map<String, Integer> pendingSnapshot() {
+        return new HashMap<>(pendingPages);
+    }
+
+    public boolean isCancelled() {
+        return cancellation.isCancelled();
+    }
+
+    // Отмечает адрес посещённым; false, если он уже встречался, в том числе с «/» в конце или без. Адрес должен быть нормализован
+    public boolean markVisited(String url) {
+        return visitedUrls.add(UrlNormalizer.key(url));
+    }
+
+    // Отмечает медиафайл проверенным; с общей очередью он достаётся одному узлу на всё поколение
+    public boolean markMediaVisited(String url) {
+        SharedFrontier frontier = shared;
+        return visitedMedia.add(UrlNormalizer.key(url)) && (frontier == null || frontier.claimMedia(url));
+    }
+
+    /**
+     * Выполняет блокирующую операцию (например, запрос к медиафайлу) на виртуальном потоке
+     * с учётом лимита сайта. Обход не завершится, пока операция не выполнена.
+     */
+    public void submitIo(Runnable io) {
+        pending.incrementAndGet();
+        // Не прерывается при остановке: операция может писать в базу, прерывание закрыло бы соединение
+        executors.fetchExecutor().execute(() -> {
+            try {
+                sitePermits.acquire();
+                try {
+                    if (!cancellation.isCancelled()) {
+                        io.run();
+                    }
+                } finally {
+                    sitePermits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Ошибка фоновой загрузки: {}", e.getMessage());
+            } finally {
+                complete();
+            }
+        });
+    }
+
+    // Ошибка загрузки главной страницы: без неё сайт считается непроиндексированным
+    public Exception getRootError() {
+        return rootError;
+    }
+
+    private void schedule(String link, int depth) {
+        CrawlTask task = accept(link, depth);
+        if (task != null) {
+            enqueue(task);
+        }
+    }
+
+    // Новый адрес в пределах лимитов или null. С общей очередью scheduledPages - оценка по всем узлам
+    private CrawlTask accept(String link, int depth) {
+        String url = UrlNormalizer.normalize(link);
+        if (url == null || cancellation.isCancelled() || depth > limits.maxDepth() || scheduledPages.get() >= limits.maxPages()) {
+            return null;
+        }
+        if (!markVisited(url)) {
+            return null;
+        }
+        if (scheduledPages.incrementAndGet() > limits.maxPages()) {
+            return null;
+        }
+        return new CrawlTask(url, depth);
+    }
+
+    // Порция адресов из общей очереди; когда взять нечего и своих задач нет, проверяет, не закончен ли обход
+    private void leaseShared() {
+        if (cancellation.isCancelled()) {
+            if (pending.get() == 0) {
+                finished.countDown();
+            }
+            return;
+        }
+        List<CrawlTask> leased = shared.lease(limits.parallelism());
+        if (leased.isEmpty()) {
+            if (pending.get() == 0 && shared.isDrained()) {
+                finished.countDown();
+            }
+            return;
+        }
+        scheduledPages.accumulateAndGet(shared.scheduled(), Math::max);  // Пересчёт по базе - не чаще раза в секунду
+        for (CrawlTask task : leased) {
+            markVisited(task.url());
+            enqueue(task);
+        }
+    }
+
+    private void enqueue(CrawlTask task) {
+        pendingPages.put(task.url(), task.depth());
+        pending.incrementAndGet();
+        frontier.add(task);
+    }
+
+    private void fetchStage(CrawlTask task) {
+        FetchResult result;
+        fetchThreads.add(Thread.currentThread());
+        try {
+            if (cancellation.isCancelled()) {
+                sitePermits.release();
+                complete();
+                return;
+            }
+            result = processor.fetch(task);
+            progress.pageFetched();
+        } catch (Exception e) {
+            fail(task, e);
+            if (!cancellation.isCancelled()) {
+                pendingPages.remove(task.url());  // Прерванная остановкой загрузка остаётся в контрольной точке
+                doneShared(task);
+            }
+            sitePermits.release();
+            complete();
+            return;
+        } finally {
+            fetchThreads.remove(Thread.currentThread());
+            Thread.interrupted();  // Прерывание, пришедшее после ответа, не относится к следующей стадии
+        }
+        // Разрешение сайта освобождает parseStage: тело ответа ждёт в очереди пула разбора под ним
+        executors.parseExecutor().execute(() -> parseStage(task, result));
+    }
+
+    private void parseStage(CrawlTask task, FetchResult result) {
+        try {
+            List<String> links = processor.process(task, result, this);
+            List<CrawlTask> next = new ArrayList<>();
+            for (String link : links) {
+                CrawlTask nextTask = accept(link, task.depth() + 1);
+                if (nextTask != null) {
+                    next.add(nextTask);
+                }
+            }
+            if (shared != null) {
+                shared.offer(next);  // Одним пакетом INSERT на страницу
+            } else {
+                next.forEach(this::enqueue);
+            }
+        } catch (Exception e) {
+            fail(task, e);
+        } finally {
+            pendingPages.remove(task.url());
+            doneShared(task);
+            sitePermits.release();
+            complete();
+        }
+    }
+
+    private void doneShared(CrawlTask task) {
+        if (shared != null) {
+            shared.done(task.url());
+        }
+    }
+
+    private void fail(CrawlTask task, Exception e) {
+        if (cancellation.isCancelled()) {
+            return;  // Прерванный остановкой запрос - не ошибка страницы
+        }
+        progress.error();
+        if (task.depth() == 0) {
+            rootError = e;
+        }
+        log.warn("Ошибка при обработке страницы {}: {}", task.url(), e.getMessage());
+    }
+
+    private void interruptFetches() {
+        fetchThreads.forEach(Thread::interrupt);
+    }
+
+    // Продолженный обход с пустой очередью завершается сразу; с общей очередью конец определяет leaseShared()
+    private void finishIfIdle() {
+        if (pending.get() == 0 && shared == null) {
+            finished.countDown();
+        }
+    }
+
+    private void complete() {
+        if (pending.decrementAndGet() == 0 && shared == null) {
+            finished.countDown();
+        }
+    }
+}
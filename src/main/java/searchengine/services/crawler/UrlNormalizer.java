@@ -0,0 +1,142 @@
+package searchengine.services.crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Приведение адресов к одному написанию, чтобы одна страница не загружалась под несколькими:
+ * схема и хост в нижнем регистре, без порта по умолчанию, фрагмента (#...), сегментов «.» и «..»,
+ * меток utm_*; параметры запроса отсортированы. Завершающий «/» сервер может отличать
+ * (/docs/ и /docs - разные адреса, относительные ссылки разрешаются от них по-разному), поэтому
+ * normalize() его сохраняет: по этому адресу страница и загружается. Убирает его только key() -
+ * ключ, по которому адреса сравниваются при отметке посещённых.
+ */
+public final class UrlNormalizer {
+
+    private UrlNormalizer() {
+    }
+
+    // null для адресов, которые обходчик не загружает (mailto:, javascript:, некорректные)
+    public static String normalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = new URI(url.trim().replace(" ", "%20")).normalize();
+        } catch (URISyntaxException e) {
+            return withoutFragment(url.trim());  // Недопустимые для URI символы: только отбрасываем фрагмент
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return null;
+        }
+
+        StringBuilder normalized = new StringBuilder(url.length());
+        normalized.append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            normalized.append(':').append(port);
+        }
+
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = normalizeQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            normalized.append('?').append(query);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Ключ посещённых адресов: нормализованный адрес без завершающего «/» пути (кроме корня),
+     * так что /docs и /docs/ считаются одной страницей. Для загрузки ключ не используется.
+     */
+    public static String key(String normalizedUrl) {
+        if (normalizedUrl == null) {
+            return null;
+        }
+        int query = normalizedUrl.indexOf('?');
+        int pathEnd = query < 0 ? normalizedUrl.length() : query;
+        int pathStart = normalizedUrl.indexOf('/', normalizedUrl.indexOf("//") + 2);
+        if (pathEnd - 1 <= pathStart || normalizedUrl.charAt(pathEnd - 1) != '/') {
+            return normalizedUrl;  // Корень, путь без «/» в конце или адрес без пути
+        }
+        return normalizedUrl.substring(0, pathEnd - 1) + normalizedUrl.substring(pathEnd);
+    }
+
+    /**
+     * Адрес относится к сайту: схема, хост и порт совпадают точно, а путь сайта - начало пути адреса
+     * до границы «/» (для сайта /blog подходят /blog и /blog/a, но не /blogs). Оба адреса нормализованные;
+     * простое startsWith пропустило бы хосты вида site.ru.evil.com.
+     */
+    public static boolean isWithinSite(String normalizedUrl, String normalizedSiteUrl) {
+        if (normalizedUrl == null || normalizedSiteUrl == null) {
+            return false;
+        }
+        int urlPath = pathStart(normalizedUrl);
+        int sitePath = pathStart(normalizedSiteUrl);
+        if (!normalizedUrl.substring(0, urlPath).equals(normalizedSiteUrl.substring(0, sitePath))) {
+            return false;
+        }
+        String path = normalizedUrl.substring(urlPath, pathEnd(normalizedUrl, urlPath));
+        String prefix = normalizedSiteUrl.substring(sitePath, pathEnd(normalizedSiteUrl, sitePath));
+        if (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        return path.equals(prefix) || path.startsWith(prefix + "/");
+    }
+
+    // Оба написания адреса с одним key(): без «/» в конце пути и с ним. Для корня - одно
+    public static List<String> spellings(String normalizedUrl) {
+        String key = key(normalizedUrl);
+        int query = key.indexOf('?');
+        int pathEnd = query < 0 ? key.length() : query;
+        int pathStart = key.indexOf('/', key.indexOf("//") + 2);
+        if (pathStart < 0 || pathStart >= pathEnd || key.charAt(pathEnd - 1) == '/') {
+            return List.of(key);
+        }
+        return List.of(key, key.substring(0, pathEnd) + "/" + key.substring(pathEnd));
+    }
+
+    // Конец схемы, хоста и порта: начало пути
+    private static int pathStart(String url) {
+        int authority = url.indexOf("//") + 2;
+        for (int i = authority; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    private static int pathEnd(String url, int pathStart) {
+        int query = url.indexOf('?', pathStart);
+        return query < 0 ? url.length() : query;
+    }
+
+    private static String withoutFragment(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        if (!lower.startsWith("http://") && !lower.startsWith("https://")) {
+            return null;
+        }
+        int hash = url.indexOf('#');
+        return hash < 0 ? url : url.substring(0, hash);
+    }
+
+    private static String normalizeQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        String[] params = Arrays.stream(query.split("&"))
+                .filter(param -> !param.isEmpty() && !param.startsWith("utm_"))
+                .sorted()
+                .toArray(String[]::new);
+        return String.join("&", params);
+    }
+}
@@ -0,0 +1,118 @@
+package searchengine.services.crawler;
+
+/**
+ * Множество посещённых адресов без хранения строк: каждый адрес заменяется 64-битным хэшем,
+ * хэши лежат в массивах long с открытой адресацией. Это около 16 байт на адрес при заполнении
+ * до половины против 150+ байт на строку адреса с узлом ConcurrentHashMap. Потокобезопасность -
+ * через сегменты со своей блокировкой: потоки обхода одного сайта почти не ждут друг друга.
+ * Совпадение хэшей двух разных адресов (вероятность порядка n²/2^65) означает, что одна страница
+ * будет считаться уже посещённой.
+ */
+public class VisitedUrlSet {
+
+    private static final int SEGMENTS = 64;  // Степень двойки
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+    private static final long EMPTY = 0;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public VisitedUrlSet() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // true, если адреса ещё не было
+    public boolean add(String url) {
+        long hash = hash(url);
+        return segmentFor(hash).add(hash);
+    }
+
+    public boolean contains(String url) {
+        long hash = hash(url);
+        return segmentFor(hash).contains(hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // FNV-1a по символам с перемешиванием из MurmurHash3: строки адресов отличаются в основном концом
+    static long hash(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;  // 0 отмечает пустую ячейку
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 58) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+
+        private long[] table = new long[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long hash) {
+            if (insert(table, hash)) {
+                if (++size * 2 > table.length) {
+                    grow();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean contains(long hash) {
+            int mask = table.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (table[i] == hash) {
+                    return true;
+                }
+                if (table[i] == EMPTY) {
+                    return false;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] grown = new long[table.length * 2];
+            for (long hash : table) {
+                if (hash != EMPTY) {
+                    insert(grown, hash);
+                }
+            }
+            table = grown;
+        }
+
+        // Линейное пробирование; таблица никогда не заполняется больше чем наполовину
+        private static boolean insert(long[] table, long hash) {
+            int mask = table.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (table[i] == hash) {
+                    return false;
+                }
+                if (table[i] == EMPTY) {
+                    table[i] = hash;
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package searchengine.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.IndexBatchRepository.DeletedRows;
+import searchengine.repositories.IndexBatchRepository.IndexRow;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пакетная запись на встроенной базе в режиме MySQL (профиль test): сгенерированные id страниц,
+ * число вставленных лемм из ответа многострочного upsert и обратный учёт частот при удалении страниц.
+ * На этих местах счётчики статистики расходятся с базой молча, поэтому частоты сверяются с таблицей.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(IndexBatchRepository.class)
+class IndexBatchRepositoryTest {
+
+    @Autowired
+    private IndexBatchRepository repository;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        site = new Site();
+        site.setUrl("https://example.org");
+        site.setName("Example");
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site = siteRepository.saveAndFlush(site);
+    }
+
+    @Test
+    void insertPagesAssignsGeneratedIdsInOrder() {
+        List<Page> pages = List.of(page("/a"), page("/b"), page("/c"));
+
+        repository.insertPages(pages);
+
+        assertThat(pages).extracting(Page::getId).doesNotContain(0).doesNotHaveDuplicates();
+        for (Page page : pages) {
+            assertThat(jdbcTemplate.queryForObject("SELECT path FROM page WHERE id = ?", String.class, page.getId()))
+                    .isEqualTo(page.getPath());
+        }
+    }
+
+    @Test
+    void upsertLemmasCountsOnlyInsertedLemmas() {
+        assertThat(repository.upsertLemmas(site.getId(), 0, Map.of("слон", 1, "купить", 2))).isEqualTo(2);
+        assertThat(repository.upsertLemmas(site.getId(), 0, Map.of("слон", 3, "ёлка", 1))).isEqualTo(1);
+
+        assertThat(frequencies(0)).containsExactlyInAnyOrderEntriesOf(Map.of("слон", 4, "купить", 2, "ёлка", 1));
+    }
+
+    // Больше одной порции многострочного INSERT: inserted = 2 * строк порции - затронуто строк, в каждой порции отдельно
+    @Test
+    void upsertLemmasCountsInsertedLemmasAcrossChunks() {
+        Map<String, Integer> existing = new HashMap<>();
+        Map<String, Integer> all = new HashMap<>();
+        for (int i = 0; i < 1500; i++) {
+            String lemma = "лемма" + i;
+            all.put(lemma, 1);
+            if (i % 2 == 0) {
+                existing.put(lemma, 1);
+            }
+        }
+        assertThat(repository.upsertLemmas(site.getId(), 0, existing)).isEqualTo(750);
+
+        assertThat(repository.upsertLemmas(site.getId(), 0, all)).isEqualTo(750);
+
+        Map<String, Integer> frequencies = frequencies(0);
+        assertThat(frequencies).hasSize(1500);
+        assertThat(frequencies.get("лемма0")).isEqualTo(2);
+        assertThat(frequencies.get("лемма1")).isEqualTo(1);
+    }
+
+    // Поколения сайта ведут свои леммы: та же лемма в новом поколении - новая строка
+    @Test
+    void upsertLemmasKeepsGenerationsApart() {
+        repository.upsertLemmas(site.getId(), 0, Map.of("слон", 1));
+
+        assertThat(repository.upsertLemmas(site.getId(), 1, Map.of("слон", 1))).isEqualTo(1);
+        assertThat(frequencies(0)).containsExactlyEntriesOf(Map.of("слон", 1));
+        assertThat(frequencies(1)).containsExactlyEntriesOf(Map.of("слон", 1));
+    }
+
+    @Test
+    void deletePagesDecrementsFrequenciesAndDeletesUnusedLemmas() {
+        Page first = page("/first");
+        Page second = page("/second");
+        repository.insertPages(List.of(first, second));
+        repository.upsertLemmas(site.getId(), 0, Map.of("общая", 2, "первая", 1));
+        Map<String, Integer> ids = repository.findLemmaIds(site.getId(), 0, Set.of("общая", "первая"));
+        repository.insertIndexes(List.of(
+                new IndexRow(first.getId(), ids.get("общая"), 1, new byte[0]),
+                new IndexRow(first.getId(), ids.get("первая"), 2, new byte[0]),
+                new IndexRow(second.getId(), ids.get("общая"), 1, new byte[0])));
+
+        assertThat(repository.deletePages(List.of(first.getId()))).isEqualTo(new DeletedRows(1, 1));
+        assertThat(frequencies(0)).containsExactlyEntriesOf(Map.of("общая", 1));
+        assertThat(indexRows()).isEqualTo(1);
+
+        assertThat(repository.deletePages(List.of(second.getId()))).isEqualTo(new DeletedRows(1, 1));
+        assertThat(frequencies(0)).isEmpty();
+        assertThat(indexRows()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page", Integer.class)).isZero();
+    }
+
+    @Test
+    void deletePagesWithoutLemmasDeletesOnlyPages() {
+        Page media = page("/image.png");
+        repository.insertPages(List.of(media));
+        repository.upsertLemmas(site.getId(), 0, Map.of("слон", 1));
+
+        assertThat(repository.deletePages(List.of(media.getId()))).isEqualTo(new DeletedRows(1, 0));
+        assertThat(frequencies(0)).containsExactlyEntriesOf(Map.of("слон", 1));
+    }
+
+    private Page page(String path) {
+        Page page = new Page(site, site.getUrl() + path, 200, "");
+        page.setContentHash(path);
+        return page;
+    }
+
+    private Map<String, Integer> frequencies(int generation) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        jdbcTemplate.query("SELECT lemma, frequency FROM lemma WHERE site_id = ? AND generation = ?",
+                rs -> {
+                    frequencies.put(rs.getString("lemma"), rs.getInt("frequency"));
+                }, site.getId(), generation);
+        return frequencies;
+    }
+
+    private int indexRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `index`", Integer.class);
+    }
+}
@@ -0,0 +1,260 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.SearchSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.IndexBatchRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.CrawlMetrics;
+import searchengine.services.crawler.CrawlProgress;
+import searchengine.services.crawler.CrawlProgressTracker;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PageBatchWriter на встроенной базе (профиль test) без транзакции теста: каждый пакет фиксируется сам,
+ * и COUNT(*) из другого соединения видит только зафиксированные страницы. flush() после возврата
+ * обещает, что в базе всё, что было передано в add() до вызова, - на этом держатся контрольные точки
+ * обхода, общая очередь и переключение поколения.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Timeout(value = 60, unit = TimeUnit.SECONDS)
+class PageBatchWriterTest {
+
+    private static final int BATCH_SIZE = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private LemmaRepository lemmaRepository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<PageBatchWriter> writers = new ArrayList<>();
+    private CrawlerSettings settings;
+    private CrawlProgressTracker progressTracker;
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        settings = new CrawlerSettings();
+        settings.setWriteBatchSize(BATCH_SIZE);
+        settings.setWriteFlushInterval(TimeUnit.HOURS.toMillis(1));  // Неполный пакет пишет только flush()
+        settings.setStatusFlushInterval(TimeUnit.HOURS.toMillis(1));
+        progressTracker = new CrawlProgressTracker(siteRepository, lemmaRepository, settings);
+
+        site = new Site();
+        site.setUrl("https://example.org");
+        site.setName("Example");
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site = siteRepository.save(site);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.forEach(PageBatchWriter::shutdown);
+        progressTracker.shutdown();
+        jdbcTemplate.update("DELETE FROM `index`");
+        jdbcTemplate.update("DELETE FROM lemma");
+        jdbcTemplate.update("DELETE FROM page");
+        jdbcTemplate.update("DELETE FROM site");
+    }
+
+    @Test
+    void writesFullBatchesAtOnceAndTheRestOnFlush() {
+        PageBatchWriter writer = writer(new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate)));
+        CrawlProgress progress = progressTracker.start(site.getUrl(), site.getId(), 0, 0);
+
+        writer.add(page("/1"), lemmas("слон", "купить"));
+        writer.add(page("/2"), lemmas("слон"));
+        writer.add(page("/3"), lemmas("слон"));
+        assertThat(committedPages()).isEqualTo(3);
+
+        writer.add(page("/4"), lemmas("ёлка"));
+        assertThat(committedPages()).isEqualTo(3);
+        writer.flush();
+
+        assertThat(committedPages()).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE lemma = ?", Integer.class, "слон")).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `index`", Integer.class)).isEqualTo(5);
+        assertThat(progress.getPagesSaved()).isEqualTo(4);
+        assertThat(progress.getLemmaCount()).isEqualTo(3);
+    }
+
+    // Пакет откатывается целиком и пишется по одной странице: частоты и счётчики - только по сохранённым
+    @Test
+    void savesPagesOneByOneWhenTheBatchFails() {
+        PageBatchWriter writer = writer(new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate)));
+        CrawlProgress progress = progressTracker.start(site.getUrl(), site.getId(), 0, 0);
+        Page broken = page("/broken");
+        broken.setContent(null);  // content NOT NULL
+
+        writer.add(page("/1"), lemmas("слон"));
+        writer.add(broken, lemmas("слон", "мамонт"));
+        writer.add(page("/3"), lemmas("слон"));
+
+        assertThat(jdbcTemplate.queryForList("SELECT path FROM page", String.class))
+                .containsExactlyInAnyOrder(site.getUrl() + "/1", site.getUrl() + "/3");
+        assertThat(jdbcTemplate.queryForList("SELECT lemma FROM lemma", String.class)).containsExactly("слон");
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE lemma = ?", Integer.class, "слон")).isEqualTo(2);
+        assertThat(progress.getPagesSaved()).isEqualTo(2);
+        assertThat(progress.getLemmaCount()).isEqualTo(1);
+        assertThat(registry.counter("crawler.errors", "type", "db_write").count()).isEqualTo(1);
+    }
+
+    @Test
+    void flushWaitsForABatchBeingWrittenByAnotherThread() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PageBatchWriter writer = writer(new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate)) {
+            @Override
+            public void insertPages(List<Page> pages) {
+                writing.countDown();
+                await(release);
+                super.insertPages(pages);
+            }
+        });
+        CompletableFuture<Void> fullBatch = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                writer.add(page("/" + i));
+            }
+        });
+        writing.await();
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(writer::flush);
+        Thread.sleep(200);
+        assertThat(flush).isNotDone();
+
+        release.countDown();
+        flush.get();
+        assertThat(committedPages()).isEqualTo(BATCH_SIZE);
+        fullBatch.get();
+    }
+
+    /**
+     * Страница, add() которой вернулся до flush(), может лежать в пакете, который другой поток уже забрал
+     * из буфера, но ещё не начал писать. Пишущие потоки гоняют пакеты по BATCH_SIZE страниц, а проверяющий
+     * после каждого flush() сверяет зафиксированные страницы с числом вернувшихся add().
+     */
+    @Test
+    void flushReturnsOnlyAfterEveryDrainedBatchIsCommitted() throws Exception {
+        PageBatchWriter writer = writer(new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate)));
+        int threads = 4;
+        int pagesPerThread = 300;
+        AtomicInteger added = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                adders.add(executor.submit(() -> {
+                    for (int i = 0; i < pagesPerThread; i++) {
+                        writer.add(page("/" + thread + "/" + i));
+                        added.incrementAndGet();
+                    }
+                }));
+            }
+            while (writing.get()) {
+                int returned = added.get();
+                writer.flush();
+                assertThat(committedPages()).isGreaterThanOrEqualTo(returned);
+                writing.set(adders.stream().anyMatch(adder -> !adder.isDone()));
+            }
+            for (Future<?> adder : adders) {
+                adder.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.flush();
+        assertThat(committedPages()).isEqualTo(threads * pagesPerThread);
+    }
+
+    // /docs и /docs/ - одна страница: переиндексация под любым написанием заменяет прежнюю версию
+    @Test
+    void replacePageReplacesEitherTrailingSlashSpelling() {
+        PageBatchWriter writer = writer(new IndexBatchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate)));
+        writer.add(page("/docs/"), lemmas("слон"));
+        writer.flush();
+
+        PageBatchWriter.CounterDelta delta = writer.replacePage(page("/docs"), lemmas("мамонт"));
+
+        assertThat(delta).isEqualTo(new PageBatchWriter.CounterDelta(0, 0));
+        assertThat(jdbcTemplate.queryForList("SELECT path FROM page", String.class)).containsExactly(site.getUrl() + "/docs");
+        assertThat(jdbcTemplate.queryForList("SELECT lemma FROM lemma", String.class)).containsExactly("мамонт");
+    }
+
+    private PageBatchWriter writer(IndexBatchRepository repository) {
+        CrawlMetrics metrics = new CrawlMetrics(registry, progressTracker);
+        PageBatchWriter writer = new PageBatchWriter(repository, transactionTemplate, new SearchResultCache(new SearchSettings(), registry),
+                progressTracker, metrics, settings);
+        writers.add(writer);
+        return writer;
+    }
+
+    private Page page(String path) {
+        Page page = new Page(site, site.getUrl() + path, 200, "<html></html>");
+        page.setContentHash(path);
+        return page;
+    }
+
+    private static Map<String, LemmaOccurrences> lemmas(String... lemmas) {
+        Map<String, LemmaOccurrences> occurrences = new HashMap<>();
+        for (String lemma : lemmas) {
+            occurrences.computeIfAbsent(lemma, key -> new LemmaOccurrences()).add(0);
+        }
+        return occurrences;
+    }
+
+    private int committedPages() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page", Integer.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
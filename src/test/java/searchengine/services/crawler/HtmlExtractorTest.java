@@ -0,0 +1,249 @@
+package searchengine.services.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import searchengine.services.crawler.HtmlExtractor.ExtractedPage;
+import searchengine.services.crawler.HtmlExtractor.MediaLink;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * HtmlExtractor заменил разбор через Jsoup Document, поэтому эталон - Jsoup на тех же байтах: заголовок,
+ * текст body, ссылки страниц (absUrl) и медиафайлы. Корпус - сохранённые страницы бенчмарков
+ * (src/jmh/resources/corpus) и набор испорченной разметки. Текст сравнивается без пробелов:
+ * HtmlExtractor разделяет пробелом границы всех блоков, Jsoup - не всегда.
+ */
+class HtmlExtractorTest {
+
+    private static final String SITE = "https://example.org";
+    private static final String BASE = SITE + "/catalog/item.html";
+
+    static Stream<Arguments> corpus() {
+        List<Arguments> pages = new ArrayList<>();
+        for (String line : resource("corpus/index.txt").split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            pages.add(Arguments.of(parts[0], resource("corpus/" + parts[0]), parts[1], parts[2]));
+        }
+        return pages.stream();
+    }
+
+    static Stream<Arguments> malformed() {
+        return Stream.of(
+                Arguments.of("без html, head и body", "<title>Заголовок</title><p>Первый абзац<p>Второй абзац"),
+                Arguments.of("незакрытые теги", "<html><body><div><p>Текст <b>жирный <i>курсив</div> хвост <a href=/a>ссылка"),
+                Arguments.of("теги в верхнем регистре", "<HTML><HEAD><TITLE>Верх</TITLE></HEAD><BODY><A HREF=\"/up\">Вверх</A></BODY></HTML>"),
+                Arguments.of("атрибут без кавычек и без значения", "<body><a data-x href=/plain>один</a><img src=pic.png alt>два</body>"),
+                Arguments.of("одинарные кавычки и пробелы у =", "<body><a href = '/spaced?q=1' class='x'>пробелы</a></body>"),
+                Arguments.of("повторный атрибут", "<body><a href=\"/first\" href=\"/second\">первый</a></body>"),
+                Arguments.of("незакрытая кавычка", "<body><p>до</p><a href=\"/broken>после</a><p>конец</p></body>"),
+                Arguments.of("скрипт со строкой-тегом", "<body><p>видно</p><script>var s = '<div>скрыто</div>';</script><p>тоже видно</p></body>"),
+                Arguments.of("стиль и незакрытый скрипт", "<head><style>p { color: red }</style></head><body>текст<script src=/app.js>alert(1)"),
+                Arguments.of("комментарии", "<body>до<!-- <a href=/hidden>скрыто</a> -->после<!-- незакрытый"),
+                Arguments.of("одиночный знак меньше", "<body><p>a < b и c <d, 3<4</p></body>"),
+                Arguments.of("сущности в тексте", "<body><p>&laquo;Ёлка&raquo; &amp; &#1078;&#x436; &lt;тег&gt;&nbsp;&copy; &amp</p></body>"),
+                Arguments.of("сущности в адресах", "<body><a href=\"/search?a=1&amp;b=2&copy=3\">поиск</a><img src=\"/i.png?x=1&amp;y=2\"></body>"),
+                Arguments.of("сущности в заголовке", "<head><title>  Цены &amp; сроки\n доставки </title></head><body>x</body>"),
+                Arguments.of("тег base", "<head><base href=\"https://example.org/deep/dir/\"></head><body><a href=\"page.html\">p</a>"
+                        + "<a href=\"../up.html\">u</a><a href=\"/root.html\">r</a><a href=\"?q=1\">q</a></body>"),
+                Arguments.of("относительные и чужие адреса", "<body><a href=\"../other.html\">o</a><a href=\"//example.org/proto\">p</a>"
+                        + "<a href=\"https://elsewhere.com/x\">x</a><a href=\"#top\">t</a><a href=\"mailto:a@example.org\">m</a>"
+                        + "<a href=\"\">пусто</a><a href=\"  /trim  \">пробелы</a></body>"),
+                Arguments.of("медиафайлы", "<head><link rel=stylesheet href=/s.css><link rel=\"shortcut icon\" href=/favicon.ico>"
+                        + "<link rel=canonical href=/canonical><link rel=next href=/page2><script src=/a.js></script></head>"
+                        + "<body><img src=/logo.png><img data-src=/lazy.png></body>"),
+                Arguments.of("текст в head", "<head><title>t</title>текст до body<meta name=x></head><body>тело</body>"),
+                Arguments.of("блоки без пробелов", "<body><div>раз</div><div>два</div><p>три</p><br>четыре<li>пять</li><span>шесть</span>семь</body>"),
+                Arguments.of("невидимые символы", "<body><p>пере­нос и​слитно \t\n  много   пробелов</p></body>"),
+                Arguments.of("пустая страница", ""),
+                Arguments.of("обрыв внутри тега", "<body><p>текст</p><a href=\"/cut"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void matchesJsoupOnSavedPages(String name, String html, String baseUri, String siteUrl) {
+        assertMatchesJsoup(html, baseUri, siteUrl);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("malformed")
+    void matchesJsoupOnMalformedMarkup(String name, String html) {
+        assertMatchesJsoup(html, BASE, SITE);
+    }
+
+    @Test
+    void skipsScriptAndStyleContent() {
+        ExtractedPage page = HtmlExtractor.extract("<html><head><style>.hidden { display: none }</style>"
+                + "<script>document.write('<p>скрыто</p>')</script></head>"
+                + "<body>видно<script type=\"text/template\"><a href=\"/template\">шаблон</a></script></body></html>", BASE, SITE);
+
+        assertThat(page.text()).isEqualTo("видно");
+        assertThat(page.links()).isEmpty();
+    }
+
+    @Test
+    void decodesEntities() {
+        ExtractedPage page = HtmlExtractor.extract("<title>A &amp; B</title><body>&laquo;x&raquo;&nbsp;&#1078;&#x416; &lt;p&gt;</body>",
+                BASE, SITE);
+
+        assertThat(page.title()).isEqualTo("A & B");
+        assertThat(page.text()).isEqualTo("«x» жЖ <p>");
+    }
+
+    // Хост сравнивается после нормализации: регистр и порт по умолчанию не важны, похожий чужой хост не проходит
+    @Test
+    void keepsOnlyLinksToTheSiteHost() {
+        ExtractedPage page = HtmlExtractor.extract("<a href=\"https://Example.ORG:443/a\">a</a>"
+                + "<a href=\"https://example.org.evil.com/b\">b</a><a href=\"https://example.org@evil.com/c\">c</a>"
+                + "<a href=\"http://example.org/d\">d</a><a href=\"/e\">e</a>", BASE, SITE);
+
+        assertThat(page.links()).containsExactly("https://Example.ORG:443/a", "https://example.org/e");
+    }
+
+    @Test
+    void resolvesLinksAgainstFirstBase() {
+        ExtractedPage page = HtmlExtractor.extract("<base href=\"https://example.org/a/\"><base href=\"https://example.org/b/\">"
+                + "<a href=\"x.html\">x</a><a href=\"../y.html\">y</a>", BASE, SITE);
+
+        assertThat(page.links()).containsExactly("https://example.org/a/x.html", "https://example.org/y.html");
+    }
+
+    @Test
+    void keepsOnlyStylesheetsAndIconsFromLinkTags() {
+        ExtractedPage page = HtmlExtractor.extract("<link rel=\"next\" href=\"/2\"><link rel=\"Stylesheet\" href=\"/s.css\">"
+                + "<link rel=\"apple-touch-icon\" href=\"/t.png\"><link href=\"/no-rel\">", BASE, SITE);
+
+        assertThat(page.media()).containsExactly(new MediaLink(SITE + "/s.css", "css"), new MediaLink(SITE + "/t.png", "image"));
+    }
+
+    @Test
+    void cutsAtCharacterBoundaryWhenLimitSplitsUtf8Character() {
+        String html = "<body>" + "ж".repeat(50) + "€".repeat(50) + "😀".repeat(50) + "</body>";
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+
+        for (int maxBytes = 8; maxBytes < body.length; maxBytes++) {
+            ExtractedPage page = HtmlExtractor.extract(body, "UTF-8", BASE, SITE, maxBytes);
+
+            assertThat(page.html()).doesNotContain("�");
+            assertThat(html).startsWith(page.html());
+            assertThat(page.html().getBytes(StandardCharsets.UTF_8).length).isBetween(maxBytes - 3, maxBytes);
+        }
+    }
+
+    @Test
+    void cutsAtCharacterBoundaryForUtf16WithBom() {
+        String html = "<body>" + "ж😀".repeat(20) + "</body>";
+        byte[] encoded = html.getBytes(StandardCharsets.UTF_16BE);
+        byte[] body = new byte[encoded.length + 2];
+        body[0] = (byte) 0xFE;
+        body[1] = (byte) 0xFF;
+        System.arraycopy(encoded, 0, body, 2, encoded.length);
+
+        for (int maxBytes = 4; maxBytes < body.length; maxBytes++) {
+            String decoded = HtmlExtractor.extract(body, null, BASE, SITE, maxBytes).html();
+
+            assertThat(decoded).doesNotContain("�");
+            assertThat(html).startsWith(decoded);
+        }
+    }
+
+    @Test
+    void replacesMalformedBytesInsideTruncatedPage() {
+        byte[] body = "<body>до ÿ после</body>".getBytes(StandardCharsets.ISO_8859_1);  // 0xFF - не UTF-8
+
+        String decoded = HtmlExtractor.extract(body, "UTF-8", BASE, SITE, body.length - 1).html();
+
+        assertThat(decoded).startsWith("<body>").contains("�");
+    }
+
+    @Test
+    void detectsCharsetFromMetaTag() {
+        byte[] body = "<meta charset=\"windows-1251\"><title>Каталог</title><body>Доставка</body>"
+                .getBytes(Charset.forName("windows-1251"));
+
+        ExtractedPage page = HtmlExtractor.extract(body, null, BASE, SITE, Integer.MAX_VALUE);
+
+        assertThat(page.title()).isEqualTo("Каталог");
+        assertThat(page.text()).isEqualTo("Доставка");
+    }
+
+    private static void assertMatchesJsoup(String html, String baseUri, String siteUrl) {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        Document doc = parse(body, baseUri);
+
+        ExtractedPage page = HtmlExtractor.extract(body, null, baseUri, siteUrl, Integer.MAX_VALUE);
+
+        assertThat(page.html()).isEqualTo(html);
+        assertThat(page.title()).isEqualTo(doc.title());
+        assertThat(withoutSpaces(page.text())).isEqualTo(withoutSpaces(doc.body().text()));
+        assertThat(page.links()).containsExactlyElementsOf(pageLinks(doc, siteUrl));
+        assertThat(page.media()).containsExactlyElementsOf(mediaLinks(doc));
+    }
+
+    private static Document parse(byte[] body, String baseUri) {
+        try {
+            return Jsoup.parse(new ByteArrayInputStream(body), null, baseUri);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String withoutSpaces(String text) {
+        return text.replace(" ", "");
+    }
+
+    // Ссылки и медиафайлы так, как их извлекал обход до HtmlExtractor, с тем же отбором ссылок сайта
+    private static List<String> pageLinks(Document doc, String siteUrl) {
+        List<String> links = new ArrayList<>();
+        for (Element link : doc.select("a[href]")) {
+            String url = link.absUrl("href");
+            if (UrlNormalizer.isWithinSite(UrlNormalizer.normalize(url), UrlNormalizer.normalize(siteUrl))) {
+                links.add(url);
+            }
+        }
+        return links;
+    }
+
+    private static List<MediaLink> mediaLinks(Document doc) {
+        List<MediaLink> media = new ArrayList<>();
+        for (Element element : doc.select("img[src], script[src], link[href][rel]")) {
+            String type = switch (element.normalName()) {
+                case "img" -> "image";
+                case "script" -> "js";
+                default -> element.is("[rel~=(?i)(^|\\s)stylesheet(\\s|$)]") ? "css"
+                        : element.is("[rel~=(?i)(^|\\s)(icon|apple-touch-icon)(\\s|$)]") ? "image" : null;
+            };
+            String url = type != null ? UrlNormalizer.normalize(element.absUrl(element.hasAttr("src") ? "src" : "href")) : null;
+            if (url != null) {
+                media.add(new MediaLink(url, type));
+            }
+        }
+        return media;
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = HtmlExtractorTest.class.getClassLoader().getResourceAsStream(name)) {
+            assertThat(in).as(name).isNotNull();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package searchengine.services.crawler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.CrawlerSettings.CrawlLimits;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Учёт завершения обхода (pending, finished) и разрешений сайта на заглушке PageProcessor:
+ * ссылки страниц задаёт карта, сеть и база не нужны. crawl() должен вернуть управление
+ * в каждом сценарии, иначе тест упадёт по таймауту.
+ */
+@Timeout(value = 30, unit = TimeUnit.SECONDS)
+class SiteCrawlerTest {
+
+    private static final String SITE = "https://example.org/";
+
+    private CrawlExecutors executors;
+
+    @BeforeEach
+    void setUp() {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setParseThreads(4);
+        executors = new CrawlExecutors(settings, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    void processesEveryReachablePageOnceAndReturns() throws InterruptedException {
+        StubSite site = new StubSite()
+                .page(SITE, "a", "b")
+                .page("a", "b", SITE, "c")
+                .page("b", "a/", "c#top")
+                .page("c");
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 100), new CancellationToken());
+
+        crawler.crawl();
+
+        assertThat(site.processed).containsExactlyInAnyOrder(SITE, url("a"), url("b"), url("c"));
+        assertThat(crawler.pendingSnapshot()).isEmpty();
+        assertThat(crawler.getRootError()).isNull();
+    }
+
+    @Test
+    void stopsSchedulingAtMaxPages() throws InterruptedException {
+        StubSite site = new StubSite().page(SITE, numbered("p", 50));
+        for (String link : numbered("p", 50)) {
+            site.page(link, numbered(link + "-", 5));
+        }
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 10), new CancellationToken());
+
+        crawler.crawl();
+
+        assertThat(site.processed).hasSize(10).contains(SITE);
+    }
+
+    @Test
+    void stopsSchedulingBelowMaxDepth() throws InterruptedException {
+        StubSite site = new StubSite()
+                .page(SITE, "1")
+                .page("1", "2")
+                .page("2", "3")
+                .page("3");
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 2, 100), new CancellationToken());
+
+        crawler.crawl();
+
+        assertThat(site.processed).containsExactlyInAnyOrder(SITE, url("1"), url("2"));
+    }
+
+    // Разрешение сайта держится от загрузки до конца разбора
+    @Test
+    void keepsAtMostParallelismPagesInWork() throws InterruptedException {
+        AtomicInteger inWork = new AtomicInteger();
+        AtomicInteger maxInWork = new AtomicInteger();
+        StubSite site = new StubSite() {
+            @Override
+            public FetchResult fetch(CrawlTask task) throws IOException {
+                maxInWork.accumulateAndGet(inWork.incrementAndGet(), Math::max);
+                return super.fetch(task);
+            }
+
+            @Override
+            public List<String> process(CrawlTask task, FetchResult result, SiteCrawler crawler) throws IOException {
+                try {
+                    Thread.sleep(5);  // Разбор медленнее загрузки
+                    return super.process(task, result, crawler);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    inWork.decrementAndGet();
+                }
+            }
+        }.page(SITE, numbered("p", 40));
+        for (String link : numbered("p", 40)) {
+            site.page(link);
+        }
+        SiteCrawler crawler = crawler(site, new CrawlLimits(3, 20, 100), new CancellationToken());
+
+        crawler.crawl();
+
+        assertThat(site.processed).hasSize(41);
+        assertThat(maxInWork.get()).isLessThanOrEqualTo(3);
+    }
+
+    // Прерванные остановкой загрузки и отброшенные адреса остаются в контрольной точке
+    @Test
+    void cancellationInterruptsFetchesAndKeepsPendingUrls() throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        StubSite site = new StubSite() {
+            @Override
+            public FetchResult fetch(CrawlTask task) throws IOException {
+                if (task.depth() == 0) {
+                    return super.fetch(task);
+                }
+                fetchStarted.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));  // Сервер не отвечает
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return super.fetch(task);
+            }
+        }.page(SITE, numbered("p", 20));
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 100), token);
+        CompletableFuture<Void> canceller = CompletableFuture.runAsync(() -> {
+            try {
+                fetchStarted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            token.cancel();
+        });
+
+        crawler.crawl();
+
+        canceller.join();
+        assertThat(site.processed).containsExactly(SITE);
+        assertThat(crawler.pendingSnapshot().keySet()).containsExactlyInAnyOrderElementsOf(urls(List.of(numbered("p", 20))));
+        assertThat(crawler.getRootError()).isNull();
+    }
+
+    @Test
+    void returnsImmediatelyWhenCancelledBeforeStart() throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        StubSite site = new StubSite().page(SITE, "a");
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 100), token);
+
+        crawler.crawl();
+
+        assertThat(site.processed).isEmpty();
+    }
+
+    @Test
+    void reportsRootError() throws InterruptedException {
+        StubSite site = new StubSite();  // Главной страницы нет: fetch бросает IOException
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 100), new CancellationToken());
+
+        crawler.crawl();
+
+        assertThat(crawler.getRootError()).isInstanceOf(IOException.class);
+    }
+
+    // Сохранённые страницы и медиафайлы не загружаются снова; в лимит страниц идут только страницы
+    @Test
+    void resumesFromCheckpointCountingOnlySavedPages() throws InterruptedException {
+        StubSite site = new StubSite()
+                .page(SITE, "a", "b")
+                .page("a", "b")
+                .page("b", "a/", "c", "d", "img1.png")
+                .page("c")
+                .page("d");
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 4), new CancellationToken());
+        crawler.resume(List.of(SITE, url("a")), urls(List.of("img1.png", "img2.png", "img3.png")), Map.of(url("b"), 1));
+
+        crawler.crawl();
+
+        // Сохранено 2 страницы, b из точки - третья, из c и d в лимит 4 помещается первая
+        assertThat(site.processed).containsExactlyInAnyOrder(url("b"), url("c"));
+        assertThat(crawler.markMediaVisited(url("img2.png"))).isFalse();
+    }
+
+    @Test
+    void resumedCrawlWithEmptyFrontierReturns() throws InterruptedException {
+        StubSite site = new StubSite().page(SITE, "a");
+        SiteCrawler crawler = crawler(site, new CrawlLimits(4, 20, 100), new CancellationToken());
+        crawler.resume(List.of(SITE, url("a")), List.of(), Map.of());
+
+        crawler.crawl();
+
+        assertThat(site.processed).isEmpty();
+    }
+
+    private SiteCrawler crawler(StubSite site, CrawlLimits limits, CancellationToken token) {
+        return new SiteCrawler(SITE, limits, site, executors, new CrawlProgress(SITE, 1, 0, 0, 0), token);
+    }
+
+    private static String url(String path) {
+        return path.startsWith("https://") ? path : SITE + path;
+    }
+
+    private static List<String> urls(List<String> paths) {
+        return paths.stream().map(SiteCrawlerTest::url).toList();
+    }
+
+    private static String[] numbered(String prefix, int count) {
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = prefix + i;
+        }
+        return paths;
+    }
+
+    // Сайт в памяти: адрес -> ссылки страницы. Адрес не из карты отвечает ошибкой загрузки
+    private static class StubSite implements PageProcessor {
+
+        final Map<String, List<String>> links = new HashMap<>();
+        final Queue<String> processed = new ConcurrentLinkedQueue<>();
+
+        StubSite page(String path, String... pageLinks) {
+            List<String> absolute = new ArrayList<>();
+            for (String link : pageLinks) {
+                absolute.add(url(link));
+            }
+            links.put(UrlNormalizer.key(UrlNormalizer.normalize(url(path))), absolute);
+            return this;
+        }
+
+        @Override
+        public FetchResult fetch(CrawlTask task) throws IOException {
+            if (!links.containsKey(UrlNormalizer.key(task.url()))) {
+                throw new IOException("нет страницы " + task.url());
+            }
+            return new FetchResult(task.url(), 200, "text/html", new byte[0], Map.of());
+        }
+
+        @Override
+        public List<String> process(CrawlTask task, FetchResult result, SiteCrawler crawler) throws IOException {
+            processed.add(task.url());
+            return links.get(UrlNormalizer.key(task.url()));
+        }
+    }
+}
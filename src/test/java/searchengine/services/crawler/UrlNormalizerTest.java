@@ -0,0 +1,104 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlNormalizerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "HTTPS://Example.ORG/Path         | https://example.org/Path",
+            "http://example.org:80/a          | http://example.org/a",
+            "https://example.org:443/a        | https://example.org/a",
+            "https://example.org:8443/a       | https://example.org:8443/a",
+            "https://example.org              | https://example.org/",
+            "https://example.org/a#section    | https://example.org/a",
+            "https://example.org/a/./b/../c   | https://example.org/a/c",
+            "https://example.org/a?b=2&a=1    | https://example.org/a?a=1&b=2",
+            "https://example.org/a?utm_source=x&id=5&utm_medium=y | https://example.org/a?id=5",
+            "https://example.org/a?utm_source=x | https://example.org/a",
+            "'  https://example.org/a b  '    | https://example.org/a%20b",
+    })
+    void normalizesSpelling(String url, String expected) {
+        assertThat(UrlNormalizer.normalize(url)).isEqualTo(expected);
+    }
+
+    @Test
+    void keepsTrailingSlashForFetching() {
+        assertThat(UrlNormalizer.normalize("https://example.org/docs/")).isEqualTo("https://example.org/docs/");
+        assertThat(UrlNormalizer.normalize("https://example.org/docs/?b=1&a=2#x")).isEqualTo("https://example.org/docs/?a=2&b=1");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"mailto:a@example.org", "javascript:void(0)", "ftp://example.org/file", "/relative/path", "https:///no-host"})
+    void rejectsUrlsTheCrawlerDoesNotFetch(String url) {
+        assertThat(UrlNormalizer.normalize(url)).isNull();
+    }
+
+    @Test
+    void rejectsEmptyUrls() {
+        assertThat(UrlNormalizer.normalize(null)).isNull();
+        assertThat(UrlNormalizer.normalize("")).isNull();
+    }
+
+    @Test
+    void onlyDropsFragmentWhenUrlIsNotValidUri() {
+        assertThat(UrlNormalizer.normalize("https://example.org/a|b#top")).isEqualTo("https://example.org/a|b");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "https://example.org/docs/       | https://example.org/docs",
+            "https://example.org/docs        | https://example.org/docs",
+            "https://example.org/docs/?a=1   | https://example.org/docs?a=1",
+            "https://example.org/a/b/        | https://example.org/a/b",
+            "https://example.org/            | https://example.org/",
+            "https://example.org/?a=1        | https://example.org/?a=1",
+            "https://example.org:8080/x/     | https://example.org:8080/x",
+            "https://example.org/a?next=/b/  | https://example.org/a?next=/b/",
+    })
+    void keyDropsTrailingSlashOfPathOnly(String url, String expected) {
+        assertThat(UrlNormalizer.key(url)).isEqualTo(expected);
+    }
+
+    @Test
+    void keyMatchesSpellingsOfOnePage() {
+        String withSlash = UrlNormalizer.normalize("https://Example.org/docs/#intro");
+        String withoutSlash = UrlNormalizer.normalize("https://example.org/docs");
+
+        assertThat(withSlash).isNotEqualTo(withoutSlash);
+        assertThat(UrlNormalizer.key(withSlash)).isEqualTo(UrlNormalizer.key(withoutSlash));
+        assertThat(UrlNormalizer.key(null)).isNull();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "http://www.playback.ru/x                 | http://www.playback.ru       | true",
+            "http://WWW.Playback.ru:80/x              | http://www.playback.ru       | true",
+            "http://www.playback.ru                   | http://www.playback.ru       | true",
+            "http://www.playback.ru.evil.com/x        | http://www.playback.ru       | false",
+            "http://www.playback.ru@evil.com/x        | http://www.playback.ru       | false",
+            "http://www.playback.ru:8080/x            | http://www.playback.ru       | false",
+            "https://www.playback.ru/x                | http://www.playback.ru       | false",
+            "https://example.org/blog                 | https://example.org/blog/    | true",
+            "https://example.org/blog/a?b=/c          | https://example.org/blog     | true",
+            "https://example.org/blogs                | https://example.org/blog     | false",
+            "https://example.org/?next=/blog/         | https://example.org/blog     | false",
+    })
+    void isWithinSiteComparesHostExactlyAndPathAtSlash(String url, String siteUrl, boolean expected) {
+        assertThat(UrlNormalizer.isWithinSite(UrlNormalizer.normalize(url), UrlNormalizer.normalize(siteUrl))).isEqualTo(expected);
+    }
+
+    @Test
+    void spellingsCoverBothTrailingSlashVariants() {
+        assertThat(UrlNormalizer.spellings("https://example.org/docs/"))
+                .containsExactly("https://example.org/docs", "https://example.org/docs/");
+        assertThat(UrlNormalizer.spellings("https://example.org/docs?a=1"))
+                .containsExactly("https://example.org/docs?a=1", "https://example.org/docs/?a=1");
+        assertThat(UrlNormalizer.spellings("https://example.org/")).containsExactly("https://example.org/");
+    }
+}
@@ -0,0 +1,120 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VisitedUrlSetTest {
+
+    private static final String SITE = "https://example.org/page/";
+
+    @Test
+    void addsEachUrlOnce() {
+        VisitedUrlSet visited = new VisitedUrlSet();
+
+        assertThat(visited.add(SITE + 1)).isTrue();
+        assertThat(visited.add(SITE + 1)).isFalse();
+        assertThat(visited.contains(SITE + 1)).isTrue();
+        assertThat(visited.contains(SITE + 2)).isFalse();
+        assertThat(visited.size()).isEqualTo(1);
+    }
+
+    // Начальная ёмкость - 64 ячейки на сегмент: 200 тысяч адресов проходят через несколько увеличений таблиц
+    @Test
+    void keepsAllUrlsAcrossResizes() {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        int urls = 200_000;
+
+        for (int i = 0; i < urls; i++) {
+            assertThat(visited.add(SITE + i)).isTrue();
+        }
+
+        assertThat(visited.size()).isEqualTo(urls);
+        for (int i = 0; i < urls; i++) {
+            assertThat(visited.contains(SITE + i)).isTrue();
+            assertThat(visited.add(SITE + i)).isFalse();
+        }
+        assertThat(visited.contains(SITE + urls)).isFalse();
+    }
+
+    // Адреса с одним сегментом и одной начальной ячейкой: второй и следующие ложатся линейным пробированием
+    @Test
+    void keepsUrlsThatCollideInOneSlot() {
+        List<String> colliding = collidingUrls(8);
+        VisitedUrlSet visited = new VisitedUrlSet();
+
+        for (String url : colliding) {
+            assertThat(visited.add(url)).isTrue();
+        }
+
+        for (String url : colliding) {
+            assertThat(visited.contains(url)).isTrue();
+            assertThat(visited.add(url)).isFalse();
+        }
+        assertThat(visited.size()).isEqualTo(colliding.size());
+    }
+
+    @Test
+    void countsEachUrlOnceUnderConcurrentAdds() throws Exception {
+        VisitedUrlSet visited = new VisitedUrlSet();
+        int threads = 8;
+        int urls = 50_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> added = new ArrayList<>();
+
+        // Все потоки добавляют одни и те же адреса, каждый в своём порядке
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                int offset = t * (urls / threads);
+                added.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (int i = 0; i < urls; i++) {
+                        if (visited.add(SITE + (i + offset) % urls)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> future : added) {
+                total += future.get();
+            }
+
+            assertThat(total).isEqualTo(urls);
+        }
+        assertThat(visited.size()).isEqualTo(urls);
+    }
+
+    @Test
+    void hashNeverReturnsEmptyCellMarker() {
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(VisitedUrlSet.hash(SITE + i)).isNotZero();
+        }
+    }
+
+    // Первые count адресов, у которых совпадают сегмент (старшие 6 бит) и ячейка начальной таблицы (младшие 6 бит)
+    private static List<String> collidingUrls(int count) {
+        Map<Long, List<String>> bySlot = new HashMap<>();
+        for (int i = 0; ; i++) {
+            String url = SITE + i;
+            long hash = VisitedUrlSet.hash(url);
+            List<String> slot = bySlot.computeIfAbsent((hash >>> 58) << 6 | hash & 63, key -> new ArrayList<>());
+            slot.add(url);
+            if (slot.size() == count) {
+                return slot;
+            }
+        }
+    }
+}